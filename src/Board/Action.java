@@ -2,6 +2,7 @@ package Board;
 
 import java.awt.Point;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 
@@ -21,6 +22,7 @@ public class Action
 	private Unit user; // The user of the spell
 	private int bounds; // The area this affect can target (used for getting all
 						// targetable points)
+	private RangeTemplate range; // Every location the action can target
 
 	/** Creates an action of a certain type for a unit
 	 * 
@@ -33,19 +35,36 @@ public class Action
 		setBounds();
 	}
 
-	/** Sets the maximum range of the action based on its type Bounds is used to
-	 * aid the getTargetablePoints method */
+	/** Sets the maximum range of the action based on its type, along with the
+	 * template of every location it can target */
 	private void setBounds()
 	{
 		switch (type)
 		{
 		case ATTACK:
 			bounds = user.getCurrentStats().getRange();
+			// The basic attack damages anywhere within a Manhattan distance
+			// below the unit's range, which reaches nowhere once the range
+			// has been lowered below 1
+			range = RangeTemplate.get(RangeTemplate.Shape.DIAMOND,
+					Math.max(bounds - 1, -1));
 			break;
 		case MOVE:
 			bounds = user.getCurrentStats().getMovement();
 			break;
 		}
+		// Actions without a shape of their own cannot target anything
+		if (range == null)
+			range = RangeTemplate.get(RangeTemplate.Shape.DIAMOND, -1);
+	}
+
+	/** Gets the template of every location the action can target around its
+	 * user
+	 * 
+	 * @return the range template */
+	public RangeTemplate getRange()
+	{
+		return range;
 	}
 
 	/** Applies this ability's effect to a unit
@@ -102,12 +121,25 @@ public class Action
 	 * @return true if the ability can target that location, false if not */
 	public boolean isValidTarget(Point p, Board board)
 	{
-		if (board.getUnitAt(p) != null)
+		return isValidTarget(p.x, p.y, board);
+	}
+
+	/** Determines if the grid location on the board contains a valid target for
+	 * this ability
+	 * 
+	 * @param x the x coordinate of the grid location
+	 * @param y the y coordinate of the grid location
+	 * @param board the board to check
+	 * @return true if the ability can target that location, false if not */
+	public boolean isValidTarget(int x, int y, Board board)
+	{
+		Unit unit = board.getUnitAt(x, y);
+		if (unit != null)
 		{
 			if (getTarget() == Target.ALLY)
-				return user.isAllied(board.getUnitAt(p));
+				return user.isAllied(unit);
 			else if (getTarget() == Target.ENEMY)
-				return !user.isAllied(board.getUnitAt(p));
+				return !user.isAllied(unit);
 		} else if (getTarget() == Target.TILE)
 			return true;
 		return false;
@@ -122,17 +154,21 @@ public class Action
 	 * @return True if the action can target that point, false if not */
 	public boolean isTargetable(Point center, Point target)
 	{
-		// Finds the Manhattan distance between two points
-		int distance = Math.abs(center.x - target.x)
-				+ Math.abs(center.y - target.y);
-		switch (type)
-		{
-		// The basic attack damages anywhere in the Manhattan distance of
-		// the unit's range
-		case ATTACK:
-			return distance < bounds;
-		}
-		return false;
+		return isTargetable(center.x, center.y, target.x, target.y);
+	}
+
+	/** Determines if an ability activated from a location can target another
+	 * location
+	 * 
+	 * @param centerX the x coordinate of the source of the ability
+	 * @param centerY the y coordinate of the source of the ability
+	 * @param targetX the x coordinate of the targeted location
+	 * @param targetY the y coordinate of the targeted location
+	 * @return True if the action can target that location, false if not */
+	public boolean isTargetable(int centerX, int centerY, int targetX,
+			int targetY)
+	{
+		return range.contains(centerX, centerY, targetX, targetY);
 	}
 
 	/** Calculates all points that are targetable by an ability
@@ -141,18 +177,41 @@ public class Action
 	 * @return a collection of all points that this skill can affect */
 	public Collection<Point> getTargetablePoints(Point center)
 	{
-		HashSet<Point> points = new HashSet<Point>();
-		for (int x = -bounds; x < bounds; x++)
-			for (int y = -bounds; y < bounds; y++)
-			{
-				Point target = new Point(center);
-				target.translate(x, y);
-				if (isTargetable(center, target))
-					points.add(target);
-			}
+		ArrayList<Point> points = new ArrayList<Point>(range.size());
+		for (int i = 0; i < range.size(); i++)
+			points.add(new Point(center.x + range.getDX(i), center.y
+					+ range.getDY(i)));
 		return points;
 	}
 
+	/** Adds every cell on the board that is targetable by an ability to a set
+	 * 
+	 * @param center the cell index of the origin of the skill
+	 * @param board the board the skill is used on
+	 * @param cells the set to add the targetable cells to */
+	public void getTargetableCells(int center, Board board, CellSet cells)
+	{
+		range.addCells(center, board, cells);
+	}
+
+	/** Adds every cell that this ability affects when targeting a cell to a set
+	 * 
+	 * @param cell the cell index that is targeted
+	 * @param board the board the ability is used on
+	 * @param cells the set to add the affected cells to */
+	public void getAffectedCells(int cell, Board board, CellSet cells)
+	{
+		switch (type)
+		{
+		case MOVE:
+			cells.add(cell);
+			break;
+		case ATTACK:
+			cells.add(cell);
+			break;
+		}
+	}
+
 	/** Returns a list of all locations that this ability can affect (useful for
 	 * Area of Effect)
 	 * 
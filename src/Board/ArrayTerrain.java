@@ -0,0 +1,97 @@
+package Board;
+
+/** Terrain that is kept entirely in memory, as an array of tile type ids and
+ * an array of costs
+ *
+ * @author Shiranka Miskin
+ * @version January 2013 */
+public class ArrayTerrain extends Terrain
+{
+
+	private byte[] types;
+	private short[] costs;
+
+	/** Creates terrain for a board
+	 *
+	 * @param width the width of the board
+	 * @param height the height of the board */
+	public ArrayTerrain(int width, int height)
+	{
+		super(width, height);
+		types = new byte[width * height];
+		costs = new short[width * height];
+	}
+
+	/** Gets the id of the type of tile at a cell
+	 *
+	 * @param cell the cell index
+	 * @return the tile type id */
+	public int getType(int cell)
+	{
+		return types[cell] & 0xFF;
+	}
+
+	/** Sets the type of tile at a cell
+	 *
+	 * @param cell the cell index
+	 * @param type the tile type id */
+	public void setType(int cell, int type)
+	{
+		types[cell] = (byte) type;
+	}
+
+	/** Gets the cost of moving onto a cell
+	 *
+	 * @param cell the cell index
+	 * @return the cost of the tile */
+	public int getCost(int cell)
+	{
+		return costs[cell];
+	}
+
+	/** Sets the cost of moving onto a cell
+	 *
+	 * @param cell the cell index
+	 * @param cost the new cost of the tile */
+	public void setCost(int cell, int cost)
+	{
+		costs[cell] = toStoredCost(cost);
+	}
+
+	/** Sets the types of a run of cells
+	 *
+	 * @param cell the index of the first cell
+	 * @param types the tile type ids to copy in
+	 * @param length the number of cells to set */
+	public void setTypes(int cell, byte[] types, int length)
+	{
+		System.arraycopy(types, 0, this.types, cell, length);
+	}
+
+	/** Sets the costs of a run of cells
+	 *
+	 * @param cell the index of the first cell
+	 * @param costs the costs to copy in
+	 * @param length the number of cells to set */
+	public void setCosts(int cell, short[] costs, int length)
+	{
+		System.arraycopy(costs, 0, this.costs, cell, length);
+	}
+
+	/** Creates a copy of the terrain that can be changed separately
+	 *
+	 * @return the copy */
+	public Terrain copy()
+	{
+		ArrayTerrain copy = new ArrayTerrain(width, height);
+		System.arraycopy(types, 0, copy.types, 0, types.length);
+		System.arraycopy(costs, 0, copy.costs, 0, costs.length);
+		return copy;
+	}
+
+	/** Does nothing, as the terrain does not use any files */
+	public void close()
+	{
+	}
+
+}
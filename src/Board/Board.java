@@ -1,5 +1,6 @@
 package Board;
 
+import java.awt.Color;
 import java.awt.Container;
 import java.awt.Dimension;
 import java.awt.Graphics;
@@ -7,16 +8,14 @@ import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.event.MouseEvent;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.Map;
-import java.util.Scanner;
 import Board.Action.Type.Target;
 import Board.UnitEntry.Pose;
 
@@ -26,11 +25,11 @@ import Board.UnitEntry.Pose;
  * 
  * @author Shiranka Miskin
  * @version January 2013 */
-public class Board implements Comparable<Board>
+public class Board extends BoardView implements Comparable<Board>
 {
 
 
-	private Tile[][] board;
+	private Terrain terrain;
 	private String name;
 	private Dimension size;
 	private int scale;
@@ -38,14 +37,53 @@ public class Board implements Comparable<Board>
 
 	private ArrayList<Unit> units;
 	private Map<Unit, Point> unitPos;
+	private Map<Unit, Integer> unitIds;
+	private ArrayList<Unit> unitsById;
+	// The ids of removed units, which are given to the next units added
+	private ArrayList<Integer> freeIds;
+	// The id of the unit at each location, split into pages that are only
+	// created once a unit stands in them
+	private int[][] occupancy;
+	private UnitBuckets unitBuckets;
+	private ChangeLog terrainChanges;
+	private ChangeLog occupancyChanges;
 	private boolean unitInMovement;
 	private Unit movingUnit;
 	private static final int unitMovementSpeed = 5;
 	private Point movingUnitOffset;
+	// Where the moving unit was before its last step, in cells so that
+	// zooming part way through a step does not move it, so it can be drawn
+	// partway between steps
+	private double movingUnitFromX;
+	private double movingUnitFromY;
+	// How far the screen is between the last update and the next one
+	private double renderProgress = 1;
 	private Point offset;
-	private LinkedList<Point> movementPath;
-	private HashMap<Point, Point> movementGrid;
-	private HashSet<Point> abilityGrid;
+	private int[] movementPath;
+	private int pathStart;
+	private int pathEnd;
+	// The cell under the cursor that the movement path was made for, -1 if
+	// the cursor was off the board or NO_PATH_CELL if it was not made for the
+	// cursor
+	private int pathCell;
+	private static final int NO_PATH_CELL = -2;
+	private boolean cursorMoved;
+	private ReachabilityMap movementGrid;
+	private ReachabilityMap noMovement;
+	private ReachabilityCache reachabilityCache;
+	private ReachabilityBatch precomputed;
+	private Pathfinder pathfinder;
+	private HierarchicalPathfinder hierarchicalPathfinder;
+	private CellSet abilityGrid;
+	private CellSet affectedCells;
+	private ThreatMap threatOverlay;
+	private TerrainLayer terrainLayer;
+	// The ids of the units being drawn, reused every time the board is drawn
+	private int[] visibleIds;
+	// Threatened locations are shaded darker the more enemies threaten them
+	private static final Color[] threatColors = { new Color(255, 0, 0, 40),
+			new Color(255, 0, 0, 70), new Color(255, 0, 0, 100),
+			new Color(255, 0, 0, 130) };
 	private Action currentAbility;
 
 	private static Tile terrainTile = new Tile("terrain");
@@ -57,53 +95,37 @@ public class Board implements Comparable<Board>
 	private Tile targetTile;
 	private Tile abilityTile;
 	private Target targetType;
-	private int[][] movementCost;
 	private boolean displayMovementGrid;
 	private Point cursorLoc;
 	private static Tile cursorImg;
 	private ArrayList<Point> spawnPoints;
 	private int spawnRange = 1;
 	public static final int MAX_TILE_COST = 99;
+	private static final int OCCUPANCY_PAGE_SIZE = 4096;
+	// Boards with at least this many cells find paths hierarchically
+	public static final int HIERARCHICAL_PATH_CELLS = 128 * 128;
 
 	/** Loads a board based on its file name
 	 * 
 	 * @param fileName the name of the .txt file
-	 * @throws FileNotFoundException */
-	public Board(String fileName) throws FileNotFoundException
+	 * @throws IOException */
+	public Board(String fileName) throws IOException
 	{
 		this(new File(fileName));
 	}
 
-	/** Creates a board from a link to a file
+	/** Creates a board from a link to a file, either a text board (which is
+	 * loaded from its binary copy when that is up to date) or a binary board
 	 * 
 	 * @param file the file to load
-	 * @throws FileNotFoundException */
-	public Board(File file) throws FileNotFoundException
+	 * @throws IOException */
+	public Board(File file) throws IOException
 	{
-		@SuppressWarnings("resource")
-		Scanner in = new Scanner(file);
-
-		// Reads in the name of the map
-		name = in.nextLine();
-
-		// Loads all the spawn points of the map
-		int numSpawnPoints = in.nextInt();
-		spawnPoints = new ArrayList<Point>(numSpawnPoints);
-		for (int i = 0; i < numSpawnPoints; i++)
-		{
-			spawnPoints.add(new Point(in.nextInt(), in.nextInt()));
-		}
-
-		// Loads the board details itself, with the size of the board
-		// and each tile and cost of that tile
-		size = new Dimension(in.nextInt(), in.nextInt());
-		board = new Tile[size.width][size.height];
-		for (int y = 0; y < size.height; y++)
-			for (int x = 0; x < size.width; x++)
-				board[x][y] = new Tile(in.next());
-		for (int y = 0; y < size.height; y++)
-			for (int x = 0; x < size.width; x++)
-				board[x][y].setCost(in.nextInt());
+		BoardFile contents = BoardFile.load(file);
+		name = contents.getName();
+		spawnPoints = contents.getSpawnPoints();
+		size = contents.getSize();
+		terrain = contents.getTerrain();
 
 		// Initializes the other variables
 		init();
@@ -113,8 +135,8 @@ public class Board implements Comparable<Board>
 	 * 
 	 * @param fileName the name of the .txt file
 	 * @param scale the scale of each tile
-	 * @throws FileNotFoundException */
-	public Board(String fileName, int scale) throws FileNotFoundException
+	 * @throws IOException */
+	public Board(String fileName, int scale) throws IOException
 	{
 		this(fileName);
 		this.scale = scale;
@@ -134,19 +156,24 @@ public class Board implements Comparable<Board>
 		spawnPoints.add(new Point(size.width - 2, 1));
 		spawnPoints.add(new Point(1, size.height - 2));
 		spawnPoints.add(new Point(size.width - 2, size.height - 2));
-		board = new Tile[size.width][size.height];
+		terrain = Terrain.create(size.width, size.height);
 
 		// Covers the entire board in grass
-		for (int x = 0; x < size.width; x++)
-			for (int y = 0; y < size.height; y++)
+		int mountain = TileType.get("mountain").getId();
+		int grass = TileType.get("grass").getId();
+		for (int y = 0; y < size.height; y++)
+			for (int x = 0; x < size.width; x++)
 			{
 				if (x == 0 || y == 0 || x == size.width - 1
 						|| y == size.height - 1)
 				{
-					board[x][y] = new Tile("mountain");
-					board[x][y].setUnwalkable();
+					terrain.setType(y * size.width + x, mountain);
+					terrain.setCost(y * size.width + x, MAX_TILE_COST);
 				} else
-					board[x][y] = new Tile("grass");
+				{
+					terrain.setType(y * size.width + x, grass);
+					terrain.setCost(y * size.width + x, 1);
+				}
 			}
 		init();
 	}
@@ -156,17 +183,37 @@ public class Board implements Comparable<Board>
 	{
 		units = new ArrayList<Unit>();
 		unitPos = new HashMap<Unit, Point>();
+		unitIds = new HashMap<Unit, Integer>();
+		// Id 0 is reserved for locations without a unit
+		unitsById = new ArrayList<Unit>();
+		unitsById.add(null);
+		freeIds = new ArrayList<Integer>();
+		occupancy = new int[(size.width * size.height + OCCUPANCY_PAGE_SIZE - 1)
+				/ OCCUPANCY_PAGE_SIZE][];
+		unitBuckets = new UnitBuckets(size.width, size.height);
+		// The versions keep counting up when the board is reset
+		if (terrainChanges == null)
+		{
+			terrainChanges = new ChangeLog(size.width, size.height);
+			occupancyChanges = new ChangeLog(size.width, size.height);
+		} else
+			occupancyChanges.recordAll();
 
 		scale = DEFAULT_SCALE;
+		terrainLayer = new TerrainLayer(this);
+		visibleIds = new int[16];
 
-		movementCost = new int[size.width][size.height];
-		movementGrid = new HashMap<Point, Point>();
-		movementPath = new LinkedList<Point>();
-		abilityGrid = new HashSet<Point>();
+		noMovement = new ReachabilityMap();
+		movementGrid = noMovement;
+		reachabilityCache = new ReachabilityCache();
+		movementPath = new int[16];
+		abilityGrid = new CellSet(size.width * size.height);
+		affectedCells = new CellSet(size.width * size.height);
 
 		offset = new Point();
 
 		cursorLoc = new Point();
+		pathCell = NO_PATH_CELL;
 		cursorImg = new Tile("cursor");
 	}
 
@@ -198,14 +245,97 @@ public class Board implements Comparable<Board>
 	 * @return true of the unit has an available target, false if not */
 	public boolean hasTargets(Unit unit, Action ability)
 	{
-		for (Unit target : units)
-		{
-			if (ability.isValidTarget(target, unit)
-					&& unit.isInAttackRange(getUnitPos(unit),
-							getUnitPos(target)))
-				return true;
-		}
-		return false;
+		Point pos = getUnitPos(unit);
+		RangeTemplate range = unit.getAttack().getRange();
+		return findUnits(pos.x, pos.y, range.getRadius(), range, unit,
+				ability.getTarget(), null);
+	}
+
+	/** Finds every unit within a Manhattan distance of a location, looking only
+	 * at the units in the buckets around it
+	 * 
+	 * @param x the x coordinate of the location
+	 * @param y the y coordinate of the location
+	 * @param radius the furthest a unit can be from the location
+	 * @param unit the unit the allegiance of the others is compared to
+	 * @param allegiance ALLY or ENEMY to only find the allies or enemies of
+	 *            the unit, or null to find every unit
+	 * @param found the collection to add the units to
+	 * @return true if any units were found, false if not */
+	public boolean getUnitsWithin(int x, int y, int radius, Unit unit,
+			Target allegiance, Collection<Unit> found)
+	{
+		return findUnits(x, y, radius, null, unit, allegiance, found);
+	}
+
+	/** Determines if there are any units within a Manhattan distance of a
+	 * location
+	 * 
+	 * @param x the x coordinate of the location
+	 * @param y the y coordinate of the location
+	 * @param radius the furthest a unit can be from the location
+	 * @param unit the unit the allegiance of the others is compared to
+	 * @param allegiance ALLY or ENEMY to only look for the allies or enemies
+	 *            of the unit, or null to look for any unit
+	 * @return true if there is a unit in range, false if not */
+	public boolean hasUnitsWithin(int x, int y, int radius, Unit unit,
+			Target allegiance)
+	{
+		return findUnits(x, y, radius, null, unit, allegiance, null);
+	}
+
+	/** Finds the units in range of a location by checking the buckets that the
+	 * range overlaps
+	 * 
+	 * @param x the x coordinate of the location
+	 * @param y the y coordinate of the location
+	 * @param radius the furthest a unit can be from the location
+	 * @param range the shape of the range, or null for every location within
+	 *            a Manhattan distance of the radius
+	 * @param unit the unit the allegiance of the others is compared to
+	 * @param allegiance ALLY, ENEMY or null for any unit, where TILE finds no
+	 *            units
+	 * @param found the collection to add the units to, or null to stop at the
+	 *            first unit found
+	 * @return true if any units were found, false if not */
+	private boolean findUnits(int x, int y, int radius, RangeTemplate range,
+			Unit unit, Target allegiance, Collection<Unit> found)
+	{
+		if (radius < 0 || allegiance == Target.TILE)
+			return false;
+
+		boolean anyFound = false;
+		int firstBucketX = Math.max(x - radius, 0) / UnitBuckets.BUCKET_SIZE;
+		int firstBucketY = Math.max(y - radius, 0) / UnitBuckets.BUCKET_SIZE;
+		int lastBucketX = Math.min(x + radius, size.width - 1)
+				/ UnitBuckets.BUCKET_SIZE;
+		int lastBucketY = Math.min(y + radius, size.height - 1)
+				/ UnitBuckets.BUCKET_SIZE;
+		for (int bucketY = firstBucketY; bucketY <= lastBucketY; bucketY++)
+			for (int bucketX = firstBucketX; bucketX <= lastBucketX; bucketX++)
+				for (int i = 0; i < unitBuckets.size(bucketX, bucketY); i++)
+				{
+					Unit other = unitsById.get(unitBuckets.get(bucketX,
+							bucketY, i));
+					Point p = unitPos.get(other);
+					int dx = p.x - x;
+					int dy = p.y - y;
+					boolean inRange;
+					if (range == null)
+						inRange = Math.abs(dx) + Math.abs(dy) <= radius;
+					else
+						inRange = range.contains(dx, dy);
+					if (!inRange
+							|| (allegiance == Target.ALLY && !unit.isAllied(other))
+							|| (allegiance == Target.ENEMY && unit.isAllied(other)))
+						continue;
+
+					if (found == null)
+						return true;
+					found.add(other);
+					anyFound = true;
+				}
+		return anyFound;
 	}
 
 	/** Initializes the grid of points that the selected ability can affect
@@ -232,8 +362,16 @@ public class Board implements Comparable<Board>
 			abilityTile = allyTile;
 			break;
 		}
-		abilityGrid.addAll(ability.getTargetablePoints(getUnitPos(unit)));
+		ability.getTargetableCells(getCell(getUnitPos(unit)), this, abilityGrid);
+
+	}
 
+	/** Sets the threat map shaded over the board
+	 * 
+	 * @param threats the threat map to show, or null to show none */
+	public void setThreatOverlay(ThreatMap threats)
+	{
+		threatOverlay = threats;
 	}
 
 	/** Clears the ability grid */
@@ -265,60 +403,46 @@ public class Board implements Comparable<Board>
 		return ability.isTargetable(center, target);
 	}
 
-	/** Initializes the flood fill movement grid generation
+	/** Initializes the movement grid, calculating every location the unit can
+	 * travel to as well as the cheapest path to each location
 	 * 
 	 * @param unit the unit that is moving */
 	public void initMovementGrid(Unit unit)
 	{
 		displayMovementGrid = true;
-		resetMovementCost();
-		generateMovementGrid(getUnitPos(unit).x, getUnitPos(unit).y,
-				getUnitPos(unit).x, getUnitPos(unit).y, unit.getMoveRange(), 0,
-				null);
-	}
-
-	/** Generates a grid of all points a unit can travel to as well as stores
-	 * their parent for pathfinding
-	 * 
-	 * @param startX The start position of the search
-	 * @param startY The end position of the search
-	 * @param x The current x coordinate of the recursion
-	 * @param y The current y coordinate of the recursion
-	 * @param maxRange The maximum range that can be reached
-	 * @param currentRange The current range of the recursion
-	 * @param parent The current parent in the recursion */
-	private void generateMovementGrid(int startX, int startY, int x, int y,
-			int maxRange, int currentRange, Point parent)
-	{
-		if (isValid(x, y) && ((x == startX && y == startY) || isWalkable(x, y)))
+		if (precomputed != null && precomputed.isDone())
 		{
-			if (currentRange < movementCost[x][y]
-					&& currentRange + board[x][y].getCost() < maxRange)
-			{
-				// Increases the current range count by how much it costed
-				// to travel over that grid space (assuming you're not already
-				// on
-				// that space
-				if (x != startX || y != startY)
-					currentRange += board[x][y].getCost();
-				Point p = new Point(x, y);
-				// Stores the point along with its parent which is used when
-				// pathfinding
-				movementGrid.put(p, parent);
-				// Sets the current cost it took to get to this location in the
-				// array
-				movementCost[x][y] = currentRange;
-				// Recursively calls the method once again for each direction
-				generateMovementGrid(startX, startY, x, y + 1, maxRange,
-						currentRange, p);
-				generateMovementGrid(startX, startY, x, y - 1, maxRange,
-						currentRange, p);
-				generateMovementGrid(startX, startY, x + 1, y, maxRange,
-						currentRange, p);
-				generateMovementGrid(startX, startY, x - 1, y, maxRange,
-						currentRange, p);
-			}
+			precomputed.addTo(reachabilityCache);
+			precomputed = null;
 		}
+		movementGrid = reachabilityCache.get(this, unit, getUnitPos(unit),
+				unit.getMoveRange());
+		pathCell = NO_PATH_CELL;
+	}
+
+	/** Starts working out the movement grids of a group of units in the
+	 * background, so that selecting any of them while the board is unchanged
+	 * does not need to calculate its grid. Only as many units as the cache
+	 * can take alongside the grid in use are worked out
+	 * 
+	 * @param units the units that are likely to be selected */
+	public void precomputeMovement(Collection<Unit> units)
+	{
+		int limit = reachabilityCache.getCapacity() - 1;
+		if (units.size() > limit)
+			units = new ArrayList<Unit>(units).subList(0, limit);
+		precomputed = new ReachabilityBatch(this, units);
+		precomputed.start();
+	}
+
+	/** Takes a snapshot of the costs of every location along with the
+	 * positions, owners and stats of every unit, which can be read from other
+	 * threads while the board keeps changing
+	 * 
+	 * @return the snapshot */
+	public BoardSnapshot snapshot()
+	{
+		return new BoardSnapshot(this);
 	}
 
 	/** Hides the movement grid from vision */
@@ -330,30 +454,34 @@ public class Board implements Comparable<Board>
 	/** Clears all data relating to movement */
 	public void clearMovementGrid()
 	{
-		movementGrid.clear();
-		movementPath.clear();
-		resetMovementCost();
-	}
-
-	/** Resets the cost of the movement grid */
-	private void resetMovementCost()
-	{
-		for (int x = 0; x < size.width; x++)
-			for (int y = 0; y < size.height; y++)
-				movementCost[x][y] = MAX_TILE_COST;
+		movementGrid = noMovement;
+		pathStart = 0;
+		pathEnd = 0;
+		pathCell = NO_PATH_CELL;
 	}
 
 	/** Creates a path based on the current movement grid from the center of the
-	 * grid to the specified point
+	 * grid to the specified cell
 	 * 
-	 * @param p the point to travel to */
-	private void createMovementPath(Point p)
+	 * @param cell the cell index to travel to */
+	private void createMovementPath(int cell)
 	{
-		if (movementGrid.containsKey(p))
-		{
-			movementPath.addFirst(p);
-			createMovementPath(movementGrid.get(p));
-		}
+		pathStart = 0;
+		pathEnd = 0;
+		if (!movementGrid.isReachable(cell))
+			return;
+
+		// Counts the length of the path so that it can be filled in from the
+		// destination back to the origin of the grid
+		int length = 0;
+		for (int c = cell; c != -1; c = movementGrid.getParent(c))
+			length++;
+		if (movementPath.length < length)
+			movementPath = new int[Math.max(length, movementPath.length * 2)];
+
+		pathEnd = length;
+		for (int c = cell; c != -1; c = movementGrid.getParent(c))
+			movementPath[--length] = c;
 	}
 
 	/** If a unit is supposed to be moving this method will advance them on their
@@ -361,40 +489,43 @@ public class Board implements Comparable<Board>
 	private void advanceMovingUnit()
 	{
 		// Determines the current location of the unit on the screen
-		Point currentPoint = scale(getUnitPos(movingUnit));
-		currentPoint.translate(movingUnitOffset.x, movingUnitOffset.y);
+		Point unitPoint = getUnitPos(movingUnit);
+		int currentX = unitPoint.x * scale + offset.x + movingUnitOffset.x;
+		int currentY = unitPoint.y * scale + offset.y + movingUnitOffset.y;
 
 		// Determines the next point that this unit will attempt to reach
-		Point target = scale(movementPath.getFirst());
+		int targetCell = movementPath[pathStart];
+		int targetX = getCellX(targetCell) * scale + offset.x;
+		int targetY = getCellY(targetCell) * scale + offset.y;
 
 		// Moves the unit towards the target
-		if (target.x < currentPoint.x)
+		if (targetX < currentX)
 			movingUnitOffset.x -= unitMovementSpeed;
-		else if (target.x > currentPoint.x)
+		else if (targetX > currentX)
 			movingUnitOffset.x += unitMovementSpeed;
 		else
 			movingUnitOffset.x = 0;
 
-		if (target.y < currentPoint.y)
+		if (targetY < currentY)
 			movingUnitOffset.y -= unitMovementSpeed;
-		else if (target.y > currentPoint.y)
+		else if (targetY > currentY)
 			movingUnitOffset.y += unitMovementSpeed;
 		else
 			movingUnitOffset.y = 0;
 
 		// If the unit is close enough to the target point
-		if (Math.abs(target.x - currentPoint.x) < unitMovementSpeed
-				&& Math.abs(target.y - currentPoint.y) < unitMovementSpeed)
+		if (Math.abs(targetX - currentX) < unitMovementSpeed
+				&& Math.abs(targetY - currentY) < unitMovementSpeed)
 		{
 			// Snap the unit to the grid location
-			setUnitPos(movingUnit, movementPath.getFirst());
+			setUnitPos(movingUnit, getCellPoint(targetCell));
 			// Reset the offset (as now it is based off of the new location)
 			movingUnitOffset.setLocation(0, 0);
 			// Remove the old target as it has been reached
-			movementPath.pop();
+			pathStart++;
 
 			// If the list is empty then the movement is complete
-			if (movementPath.isEmpty())
+			if (pathStart == pathEnd)
 			{
 				unitInMovement = false;
 				movingUnit.setPose(Pose.IDLE);
@@ -403,14 +534,15 @@ public class Board implements Comparable<Board>
 			// Otherwise set the unit to its appropriate pose
 			else
 			{
-				target = movementPath.getFirst();
-				if (target.x < getUnitPos(movingUnit).x)
+				int nextX = getCellX(movementPath[pathStart]);
+				int nextY = getCellY(movementPath[pathStart]);
+				if (nextX < getUnitPos(movingUnit).x)
 					movingUnit.setPose(Pose.MOVE_LEFT);
-				else if (target.x > getUnitPos(movingUnit).x)
+				else if (nextX > getUnitPos(movingUnit).x)
 					movingUnit.setPose(Pose.MOVE_RIGHT);
-				else if (target.y < getUnitPos(movingUnit).y)
+				else if (nextY < getUnitPos(movingUnit).y)
 					movingUnit.setPose(Pose.MOVE_UP);
-				else if (target.y > getUnitPos(movingUnit).y)
+				else if (nextY > getUnitPos(movingUnit).y)
 					movingUnit.setPose(Pose.MOVE_DOWN);
 			}
 		}
@@ -426,9 +558,10 @@ public class Board implements Comparable<Board>
 		unitInMovement = true;
 		movingUnit = unit;
 		movingUnitOffset = new Point();
-		movementPath.clear();
-		createMovementPath(dest);
-
+		movingUnitFromX = getUnitPos(unit).x;
+		movingUnitFromY = getUnitPos(unit).y;
+		createMovementPath(getCell(dest));
+		pathCell = NO_PATH_CELL;
 	}
 
 	/** Detects if a unit is currently moving or not
@@ -446,7 +579,7 @@ public class Board implements Comparable<Board>
 	 * @return True if the point can be reached, false if not */
 	public boolean isInMovementRange(Point p)
 	{
-		return movementGrid.containsKey(p);
+		return movementGrid.isReachable(p.x, p.y);
 	}
 
 	/** Uses a previous generated movement grid to calculate if a point is able
@@ -457,18 +590,145 @@ public class Board implements Comparable<Board>
 	 * @return True if the point can be reached, false if not */
 	public boolean isInMovementRange(int x, int y)
 	{
-		return movementGrid.containsKey(new Point(x, y));
+		return movementGrid.isReachable(x, y);
 	}
 
 
+	/** Gets the grid of every location that can currently be moved to
+	 * 
+	 * @return the current movement grid */
+	public ReachabilityMap getMovementGrid()
+	{
+		return movementGrid;
+	}
+
+	/** Gets the cache of the movement grids of recently selected units
+	 * 
+	 * @return the board's reachability cache */
+	public ReachabilityCache getReachabilityCache()
+	{
+		return reachabilityCache;
+	}
+
+	/** Gets the pathfinder used to plan paths across this board
+	 * 
+	 * @return the board's pathfinder */
+	public Pathfinder getPathfinder()
+	{
+		if (pathfinder == null)
+			pathfinder = new Pathfinder(this);
+		return pathfinder;
+	}
+
+	/** Gets the hierarchical pathfinder used to plan paths across large boards
+	 * 
+	 * @return the board's hierarchical pathfinder */
+	public HierarchicalPathfinder getHierarchicalPathfinder()
+	{
+		if (hierarchicalPathfinder == null)
+			hierarchicalPathfinder = new HierarchicalPathfinder(this);
+		return hierarchicalPathfinder;
+	}
+
+	/** Finds a path between two locations, which may take more than one turn
+	 * to travel. On large boards the path is found hierarchically, which is
+	 * far faster but only close to the cheapest path and ignores units
+	 * 
+	 * @param start the location to start from
+	 * @param goal the location to travel to
+	 * @return the path, or null if the goal cannot be reached */
+	public Path findPath(Point start, Point goal)
+	{
+		if (getNumCells() >= HIERARCHICAL_PATH_CELLS)
+			return getHierarchicalPathfinder().findPath(start, goal);
+		return getPathfinder().findPath(start, goal);
+	}
+
+	/** Called whenever the tile or the cost of the tile at a location changes
+	 * 
+	 * @param x the x coordinate of the tile
+	 * @param y the y coordinate of the tile */
+	private void tileChanged(int x, int y)
+	{
+		terrainChanges.record(y * size.width + x);
+		if (hierarchicalPathfinder != null)
+			hierarchicalPathfinder.tileChanged(x, y);
+	}
+
+	/** Gets the cell index of a grid location, which is used to refer to a
+	 * location with a single number
+	 * 
+	 * @param x the x coordinate of the location
+	 * @param y the y coordinate of the location
+	 * @return the cell index of the location */
+	public int getCell(int x, int y)
+	{
+		return y * size.width + x;
+	}
+
+	/** Gets the cell index of a grid location
+	 * 
+	 * @param p the location
+	 * @return the cell index of the location */
+	public int getCell(Point p)
+	{
+		return getCell(p.x, p.y);
+	}
+
+	/** Gets the x coordinate of a cell index
+	 * 
+	 * @param cell the cell index
+	 * @return the x coordinate of the cell */
+	public int getCellX(int cell)
+	{
+		return cell % size.width;
+	}
+
+	/** Gets the y coordinate of a cell index
+	 * 
+	 * @param cell the cell index
+	 * @return the y coordinate of the cell */
+	public int getCellY(int cell)
+	{
+		return cell / size.width;
+	}
+
+	/** Gets the grid location of a cell index
+	 * 
+	 * @param cell the cell index
+	 * @return the point corresponding to the cell */
+	public Point getCellPoint(int cell)
+	{
+		return new Point(getCellX(cell), getCellY(cell));
+	}
+
+	/** Gets the number of cells on the board
+	 * 
+	 * @return the width of the board multiplied by its height */
+	public int getNumCells()
+	{
+		return size.width * size.height;
+	}
+
+	/** Returns if a location lies within the board, regardless of whether it
+	 * can be traversed
+	 * 
+	 * @param x the x coordinate of the location
+	 * @param y the y coordinate of the location
+	 * @return true if the location is on the board, false if not */
+	public boolean isInBounds(int x, int y)
+	{
+		return x >= 0 && y >= 0 && x < size.width && y < size.height;
+	}
+
 	/** Returns if a location can be traversed by a unit
 	 * 
 	 * @param p the point to check
 	 * @return true if a unit can walk over the point, false if they cannot */
 	public boolean isWalkable(Point p)
 	{
-		return board[p.x][p.y].getCost() < MAX_TILE_COST
-				&& !unitPos.containsValue(p);
+		return terrain.getCost(p.y * size.width + p.x) < MAX_TILE_COST
+				&& getOccupant(p.y * size.width + p.x) == 0;
 	}
 
 	/** Returns if a location can be traversed by a unit
@@ -478,8 +738,8 @@ public class Board implements Comparable<Board>
 	 * @return true if a unit can walk over the point, false if they cannot */
 	public boolean isWalkable(int x, int y)
 	{
-		return board[x][y].getCost() != MAX_TILE_COST
-				&& !unitPos.containsValue(new Point(x, y));
+		return terrain.getCost(y * size.width + x) != MAX_TILE_COST
+				&& getOccupant(y * size.width + x) == 0;
 	}
 
 	/** Returns if a point is within the board bounds and traversable
@@ -498,8 +758,8 @@ public class Board implements Comparable<Board>
 	 * @return true if the location is valid, false if not */
 	public boolean isValid(int x, int y)
 	{
-		return x >= 0 && y >= 0 && x < board.length && y < board[0].length
-				&& board[x][y].getCost() < MAX_TILE_COST;
+		return x >= 0 && y >= 0 && x < size.width && y < size.height
+				&& terrain.getCost(y * size.width + x) < MAX_TILE_COST;
 	}
 
 	/** Resets the current board */
@@ -511,40 +771,28 @@ public class Board implements Comparable<Board>
 		init();
 	}
 
-	/** Write the board data to a file
+	/** Lets go of the files the board's terrain is read from once the board
+	 * is no longer needed. The board cannot be used afterwards */
+	public void close()
+	{
+		terrain.close();
+	}
+
+	/** Write the board data to a file, along with its binary copy
 	 * 
 	 * @param fileName The name of the file to load
 	 * @throws IOException */
 	public void writeToFile() throws IOException
 	{
+		BoardFile.save(this, getSaveFile());
+	}
 
-		FileWriter out = new FileWriter("res/boards/" + name + ".txt");
-
-		out.write(name + "\r\n");
-
-		// Write the number of spawn points followed by
-		// the coordinates of all of them
-		out.write(spawnPoints.size() + "\r\n");
-		for (Point p : spawnPoints)
-			out.write(p.x + " " + p.y + "\r\n");
-
-		// Write the dimensions followed by a grid of each type
-		// of tile, followed by another grid of each tile cost
-		out.write(size.width + " " + size.height + "\r\n");
-		for (int y = 0; y < size.height; y++)
-		{
-			for (int x = 0; x < size.width; x++)
-				out.write(board[x][y].getName() + " ");
-			out.write("\r\n");
-		}
-		for (int y = 0; y < size.height; y++)
-		{
-			for (int x = 0; x < size.width; x++)
-				out.write(board[x][y].getCost() + " ");
-			out.write("\r\n");
-		}
-
-		out.close();
+	/** Gets the file the board is saved to
+	 * 
+	 * @return the board's .txt file in res/boards/ */
+	public File getSaveFile()
+	{
+		return new File("res/boards/" + name + BoardFile.TEXT_EXTENSION);
 	}
 
 	/** Compares two boards alphabetically by their name */
@@ -559,8 +807,25 @@ public class Board implements Comparable<Board>
 	 * @param p The point to place it at */
 	public void addUnit(Unit unit, Point p)
 	{
+		// Gives the unit the id of the last unit removed, so the ids stay as
+		// few as the units on the board at once
+		int id;
+		if (!freeIds.isEmpty())
+		{
+			id = freeIds.remove(freeIds.size() - 1);
+			unitsById.set(id, unit);
+		} else
+		{
+			id = unitsById.size();
+			unitsById.add(unit);
+		}
+		unitIds.put(unit, id);
+
 		units.add(unit);
 		unitPos.put(unit, p);
+		unitBuckets.add(id, p.x, p.y);
+		setOccupant(p.y * size.width + p.x, id);
+		occupancyChanges.record(p.y * size.width + p.x);
 	}
 
 	/** Adds a unit around a spawnpoint
@@ -584,7 +849,7 @@ public class Board implements Comparable<Board>
 		// If the unit has still not been added, increase the range of
 		// the spawn placement and try again, resetting the spawn range
 		// after it is completed
-		if (!units.contains(unit))
+		if (!unitIds.containsKey(unit))
 		{
 			spawnRange++;
 			addUnit(unit, spawnPoint);
@@ -597,8 +862,17 @@ public class Board implements Comparable<Board>
 	 * @param unit The unit to remove */
 	public void removeUnit(Unit unit)
 	{
+		Integer id = unitIds.remove(unit);
+		if (id == null)
+			return;
+		Point p = unitPos.remove(unit);
+		unitBuckets.remove(id, p.x, p.y);
+		if (getOccupant(p.y * size.width + p.x) == id)
+			setOccupant(p.y * size.width + p.x, 0);
+		occupancyChanges.record(p.y * size.width + p.x);
+		unitsById.set(id, null);
+		freeIds.add(id);
 		units.remove(unit);
-		unitPos.remove(unit);
 	}
 
 	/** Scales a point on the board to its corresponding point on the pixel
@@ -616,6 +890,10 @@ public class Board implements Comparable<Board>
 	 * @param scale the new scale of the board */
 	public void setScale(int scale)
 	{
+		// Sprites scaled for the old zoom will not be drawn at those sizes
+		// again
+		if (scale != this.scale)
+			ScaledImageCache.clear();
 		this.scale = scale;
 	}
 
@@ -635,7 +913,58 @@ public class Board implements Comparable<Board>
 	 * @param p The point to place it at */
 	public void setUnitPos(Unit unit, Point p)
 	{
-		unitPos.put(unit, p);
+		int id = unitIds.get(unit);
+		Point oldPos = unitPos.put(unit, p);
+		if (oldPos != null)
+			unitBuckets.move(id, oldPos.x, oldPos.y, p.x, p.y);
+		else
+			unitBuckets.add(id, p.x, p.y);
+		if (oldPos != null
+				&& getOccupant(oldPos.y * size.width + oldPos.x) == id)
+			setOccupant(oldPos.y * size.width + oldPos.x, 0);
+		setOccupant(p.y * size.width + p.x, id);
+		if (oldPos != null)
+			occupancyChanges.record(oldPos.y * size.width + oldPos.x);
+		occupancyChanges.record(p.y * size.width + p.x);
+	}
+
+	/** Gets the version of the board's terrain, which increases every time a
+	 * tile or its cost changes
+	 * 
+	 * @return the terrain version */
+	public int getTerrainVersion()
+	{
+		return terrainChanges.getVersion();
+	}
+
+	/** Gets the version of the positions of the units, which increases every
+	 * time a unit is added, moved or removed
+	 * 
+	 * @return the occupancy version */
+	public int getOccupancyVersion()
+	{
+		return occupancyChanges.getVersion();
+	}
+
+	/** Gets the region of tiles that have changed since a terrain version
+	 * 
+	 * @param sinceVersion the terrain version that was last seen
+	 * @return the bounding rectangle of the changed tiles, or null if none
+	 *         have changed */
+	public Rectangle getTerrainChanges(int sinceVersion)
+	{
+		return terrainChanges.getDirtyRegion(sinceVersion);
+	}
+
+	/** Gets the region of locations whose units have changed since an
+	 * occupancy version
+	 * 
+	 * @param sinceVersion the occupancy version that was last seen
+	 * @return the bounding rectangle of the changed locations, or null if none
+	 *         have changed */
+	public Rectangle getOccupancyChanges(int sinceVersion)
+	{
+		return occupancyChanges.getDirtyRegion(sinceVersion);
 	}
 
 	/** Changes the offset of the board
@@ -667,7 +996,9 @@ public class Board implements Comparable<Board>
 	 * @param tile the replacement tile */
 	public void setTile(Point p, Tile tile)
 	{
-		board[p.x][p.y] = tile;
+		terrain.setType(p.y * size.width + p.x, tile.getType().getId());
+		terrain.setCost(p.y * size.width + p.x, tile.getCost());
+		tileChanged(p.x, p.y);
 	}
 
 	/** Sets the cost of a tile
@@ -676,7 +1007,73 @@ public class Board implements Comparable<Board>
 	 * @param cost the new cost of the tile */
 	public void setCost(Point p, int cost)
 	{
-		board[p.x][p.y].setCost(cost);
+		setCost(p.x, p.y, cost);
+	}
+
+	/** Sets the cost of a tile
+	 * 
+	 * @param x the x coordinate of the tile
+	 * @param y the y coordinate of the tile
+	 * @param cost the new cost of the tile */
+	public void setCost(int x, int y, int cost)
+	{
+		terrain.setCost(y * size.width + x, cost);
+		tileChanged(x, y);
+	}
+
+	/** Gets the cost of moving onto a tile
+	 * 
+	 * @param x the x coordinate of the tile
+	 * @param y the y coordinate of the tile
+	 * @return the cost of the tile */
+	public int getCost(int x, int y)
+	{
+		return terrain.getCost(y * size.width + x);
+	}
+
+	/** Gets the type of a tile
+	 * 
+	 * @param x the x coordinate of the tile
+	 * @param y the y coordinate of the tile
+	 * @return the type of the tile */
+	public TileType getTileType(int x, int y)
+	{
+		return TileType.get(terrain.getType(y * size.width + x));
+	}
+
+	/** Gets the terrain of the board
+	 * 
+	 * @return the type and cost of every location */
+	public Terrain getTerrain()
+	{
+		return terrain;
+	}
+
+	/** Gets the id of the unit at a cell
+	 * 
+	 * @param cell the cell index
+	 * @return the id of the unit, or 0 if there is none */
+	private int getOccupant(int cell)
+	{
+		int[] page = occupancy[cell / OCCUPANCY_PAGE_SIZE];
+		return page == null ? 0 : page[cell % OCCUPANCY_PAGE_SIZE];
+	}
+
+	/** Sets the id of the unit at a cell
+	 * 
+	 * @param cell the cell index
+	 * @param id the id of the unit, or 0 to clear the cell */
+	private void setOccupant(int cell, int id)
+	{
+		int[] page = occupancy[cell / OCCUPANCY_PAGE_SIZE];
+		if (page == null)
+		{
+			if (id == 0)
+				return;
+			page = new int[OCCUPANCY_PAGE_SIZE];
+			occupancy[cell / OCCUPANCY_PAGE_SIZE] = page;
+		}
+		page[cell % OCCUPANCY_PAGE_SIZE] = id;
 	}
 
 	/** Returns an integer array of all the costs of each tile
@@ -684,10 +1081,10 @@ public class Board implements Comparable<Board>
 	 * @return the array of costs */
 	public int[][] getCostGrid()
 	{
-		int[][] grid = new int[board.length][board[0].length];
-		for (int x = 0; x < board.length; x++)
-			for (int y = 0; y < board[0].length; y++)
-				grid[x][y] = board[x][y].getCost();
+		int[][] grid = new int[size.width][size.height];
+		for (int x = 0; x < size.width; x++)
+			for (int y = 0; y < size.height; y++)
+				grid[x][y] = getCost(x, y);
 		return grid;
 	}
 
@@ -719,6 +1116,25 @@ public class Board implements Comparable<Board>
 		return points;
 	}
 
+	/** Gets the id of a unit, which is also its value in the occupancy grid
+	 * 
+	 * @param unit the unit
+	 * @return the id of the unit, or 0 if it is not on the board */
+	int getUnitId(Unit unit)
+	{
+		Integer id = unitIds.get(unit);
+		return id == null ? 0 : id;
+	}
+
+	/** Gets the number of unit ids handed out, which is one more than the
+	 * highest id
+	 * 
+	 * @return the number of ids */
+	int getNumUnitIds()
+	{
+		return unitsById.size();
+	}
+
 	/** Returns all units on the board
 	 * 
 	 * @return the units placed on this board */
@@ -743,13 +1159,10 @@ public class Board implements Comparable<Board>
 	public Collection<Unit> getTargets(Unit unit, Action ability)
 	{
 		HashSet<Unit> targets = new HashSet<Unit>();
-		for (Unit target : units)
-		{
-			if (ability.isValidTarget(target, unit)
-					&& unit.isInAttackRange(getUnitPos(unit),
-							getUnitPos(target)))
-				targets.add(target);
-		}
+		Point pos = getUnitPos(unit);
+		RangeTemplate range = unit.getAttack().getRange();
+		findUnits(pos.x, pos.y, range.getRadius(), range, unit,
+				ability.getTarget(), targets);
 		return targets;
 	}
 
@@ -786,7 +1199,7 @@ public class Board implements Comparable<Board>
 	 * @return The tile that lies at that point */
 	public Tile getTile(Point p)
 	{
-		return board[p.x][p.y];
+		return getTile(p.x, p.y);
 	}
 
 	/** Gets the tile at a certain point
@@ -796,7 +1209,7 @@ public class Board implements Comparable<Board>
 	 * @return The tile that lies at that point */
 	public Tile getTile(int x, int y)
 	{
-		return board[x][y];
+		return new Tile(this, x, y);
 	}
 
 	/** Returns the tile at a pixel coordinate
@@ -806,7 +1219,7 @@ public class Board implements Comparable<Board>
 	 * @return The tile at that location */
 	public Tile getTileAtPixel(int x, int y)
 	{
-		return board[(x - offset.x) / scale][(y - offset.y) / scale];
+		return getTile((x - offset.x) / scale, (y - offset.y) / scale);
 	}
 
 	/** Returns the tile at a pixel coordinate
@@ -815,7 +1228,7 @@ public class Board implements Comparable<Board>
 	 * @return The tile at that location */
 	public Tile getTileAtPixel(Point p)
 	{
-		return board[(p.x - offset.x) / scale][(p.y - offset.y) / scale];
+		return getTileAtPixel(p.x, p.y);
 	}
 
 	/** Returns the current location of the selection cursor
@@ -831,7 +1244,7 @@ public class Board implements Comparable<Board>
 	 * @return the width of the grid */
 	public int getGridWidth()
 	{
-		return board.length;
+		return size.width;
 	}
 
 	/** Gets the height of the grid
@@ -839,7 +1252,7 @@ public class Board implements Comparable<Board>
 	 * @return the height of the grid */
 	public int getGridHeight()
 	{
-		return board[0].length;
+		return size.height;
 	}
 
 	/** Gets the width of the grid in pixels
@@ -847,7 +1260,7 @@ public class Board implements Comparable<Board>
 	 * @return the width of the grid in pixels */
 	public int getPixelWidth()
 	{
-		return board.length * scale;
+		return size.width * scale;
 	}
 
 	/** Gets the height of the grid in pixels
@@ -855,7 +1268,7 @@ public class Board implements Comparable<Board>
 	 * @return the height of the grid */
 	public int getPixelHeight()
 	{
-		return board[0].length * scale;
+		return size.height * scale;
 	}
 
 	/** Gets the unit located at a certain point
@@ -864,12 +1277,29 @@ public class Board implements Comparable<Board>
 	 * @return the unit at the specified point */
 	public Unit getUnitAt(Point p)
 	{
-		for (Unit unit : units)
-		{
-			if (getUnitPos(unit).equals(p))
-				return unit;
-		}
-		return null;
+		return getUnitAt(p.x, p.y);
+	}
+
+	/** Gets the unit located at a certain point
+	 * 
+	 * @param x the x coordinate of the unit
+	 * @param y the y coordinate of the unit
+	 * @return the unit at the specified point, or null if there is none */
+	public Unit getUnitAt(int x, int y)
+	{
+		if (x < 0 || y < 0 || x >= size.width || y >= size.height)
+			return null;
+		return unitsById.get(getOccupant(y * size.width + x));
+	}
+
+	/** Determines if there is a unit at a location
+	 * 
+	 * @param x the x coordinate of the location
+	 * @param y the y coordinate of the location
+	 * @return true if a unit is at the location, false if not */
+	public boolean isOccupied(int x, int y)
+	{
+		return getOccupant(y * size.width + x) != 0;
 	}
 
 	/** Gets the position of a unit
@@ -910,7 +1340,10 @@ public class Board implements Comparable<Board>
 	 * @return the current movementPath */
 	public LinkedList<Point> getMovementPath()
 	{
-		return movementPath;
+		LinkedList<Point> path = new LinkedList<Point>();
+		for (int i = pathStart; i < pathEnd; i++)
+			path.add(getCellPoint(movementPath[i]));
+		return path;
 	}
 
 	/** Draws the board
@@ -920,81 +1353,240 @@ public class Board implements Comparable<Board>
 	public void draw(Graphics g, Container container)
 	{
 
-		// Draws all the tiles of the board
-		for (int x = 0; x < board.length; x++)
+		// Draws all the tiles of the board, which are only drawn again once
+		// they change
+		terrainLayer.draw(g, offset.x, offset.y, scale);
+
+		// Only the cells that can be seen are drawn over
+		Rectangle visible = getVisibleCells(g, 0);
+
+		// Shades every location the enemies of a player could attack next turn
+		if (threatOverlay != null)
 		{
-			for (int y = 0; y < board[x].length; y++)
-			{
-				board[x][y].draw(g, x * scale + offset.x, y * scale + offset.y,
-						scale, container);
-			}
+			threatOverlay.update();
+			for (int y = visible.y; y < visible.y + visible.height; y++)
+				for (int x = visible.x; x < visible.x + visible.width; x++)
+				{
+					int threats = threatOverlay.getThreatCount(x, y);
+					if (threats == 0)
+						continue;
+					g.setColor(threatColors[Math.min(threats,
+							threatColors.length) - 1]);
+					g.fillRect(x * scale + offset.x, y * scale + offset.y,
+							scale, scale);
+				}
 		}
 
 		// If the movement grid is currently to be displayed, draw all the tiles
 		// for it
 		if (displayMovementGrid)
 		{
-			for (Point p : movementGrid.keySet())
+			for (int i = 0; i < movementGrid.size(); i++)
 			{
-				terrainTile.draw(g, scale(p), scale, container);
+				int cell = movementGrid.getCell(i);
+				if (visible.contains(getCellX(cell), getCellY(cell)))
+					terrainTile.draw(g, getCellX(cell) * scale + offset.x,
+							getCellY(cell) * scale + offset.y, scale,
+							container);
 			}
 
-			for (Point p : movementPath)
+			for (int i = pathStart; i < pathEnd; i++)
 			{
-				terrainTargetTile.draw(g, scale(p), scale, container);
+				int cell = movementPath[i];
+				if (visible.contains(getCellX(cell), getCellY(cell)))
+					terrainTargetTile.draw(g, getCellX(cell) * scale
+							+ offset.x, getCellY(cell) * scale + offset.y,
+							scale, container);
 			}
 		}
 
 		// If an ability is being chosen, display the range indicators and the
 		// target for it
-		for (Point p : abilityGrid)
+		for (int i = 0; i < abilityGrid.size(); i++)
 		{
-			abilityTile.draw(g, scale(p), scale, container);
+			int cell = abilityGrid.get(i);
+			if (visible.contains(getCellX(cell), getCellY(cell)))
+				abilityTile.draw(g, getCellX(cell) * scale + offset.x,
+						getCellY(cell) * scale + offset.y, scale, container);
 		}
-		if (abilityGrid.contains(cursorLoc))
+		if (isInBounds(cursorLoc.x, cursorLoc.y)
+				&& abilityGrid.contains(getCell(cursorLoc)))
 		{
-			HashSet<Point> affectedPoints = currentAbility
-					.getAffectedLocations(cursorLoc);
-			for (Point p : affectedPoints)
-				targetTile.draw(g, scale(p), scale, container);
+			affectedCells.clear();
+			currentAbility.getAffectedCells(getCell(cursorLoc), this,
+					affectedCells);
+			for (int i = 0; i < affectedCells.size(); i++)
+			{
+				int cell = affectedCells.get(i);
+				if (visible.contains(getCellX(cell), getCellY(cell)))
+					targetTile.draw(g, getCellX(cell) * scale + offset.x,
+							getCellY(cell) * scale + offset.y, scale,
+							container);
+			}
 		}
 
-		// Draws all the units of the board
-		for (Unit unit : units)
+		// Draws the units near the screen, as units can be drawn wider than
+		// their tile
+		Rectangle unitCells = getVisibleCells(g, 1);
+		int numVisible = findVisibleUnits(unitCells);
+		for (int i = 0; i < numVisible; i++)
 		{
+			Unit unit = unitsById.get(visibleIds[i]);
 			if (!(unitInMovement && unit == movingUnit))
 				unit.draw(g, scale(getUnitPos(unit)), scale, container);
 		}
 		if (unitInMovement)
 		{
-			// Move the unit along its path before drawing it at its offsetted
-			// location
-			advanceMovingUnit();
+			// Draw the unit at its offsetted location, or between there and
+			// where it was before its last step if the screen is drawn between
+			// updates
 			Point offsetPoint = scale(getUnitPos(movingUnit));
 			offsetPoint.translate(movingUnitOffset.x, movingUnitOffset.y);
-			movingUnit.draw(g, offsetPoint, scale, container);
+			if (renderProgress < 1)
+			{
+				int fromX = offset.x + (int) Math.round(movingUnitFromX * scale);
+				int fromY = offset.y + (int) Math.round(movingUnitFromY * scale);
+				offsetPoint.setLocation(fromX
+						+ (int) Math.round((offsetPoint.x - fromX)
+								* renderProgress), fromY
+						+ (int) Math.round((offsetPoint.y - fromY)
+								* renderProgress));
+			}
+			if (unitCells.contains(getUnitPos(movingUnit)))
+				movingUnit.draw(g, offsetPoint, scale, container);
+			else
+				movingUnit.animate();
 		}
 
+		// Units out of sight still finish the animations the game waits on.
+		// Only the few units playing an animation once are looked at
+		if (numVisible < units.size())
+			for (Unit unit : Unit.getPlayingOnce())
+				if (unit != movingUnit && unitPos.containsKey(unit)
+						&& !unitCells.contains(getUnitPos(unit)))
+					unit.animate();
+
 		// Draws the board cursor
 		cursorImg.draw(g, scale(cursorLoc), scale, container);
 	}
 
 
+	/** Gets the cells of the board that can be seen through the clip of a
+	 * graphics context
+	 * 
+	 * @param g the graphics being drawn with
+	 * @param margin the number of cells to add around the cells that can be
+	 *            seen
+	 * @return the cells, which are empty if none can be seen */
+	private Rectangle getVisibleCells(Graphics g, int margin)
+	{
+		int firstX = 0;
+		int firstY = 0;
+		int lastX = size.width - 1;
+		int lastY = size.height - 1;
+		Rectangle clip = g.getClipBounds();
+		if (clip != null)
+		{
+			firstX = Math.max(firstX,
+					Math.floorDiv(clip.x - offset.x, scale) - margin);
+			firstY = Math.max(firstY,
+					Math.floorDiv(clip.y - offset.y, scale) - margin);
+			lastX = Math.min(lastX, Math.floorDiv(clip.x + clip.width - 1
+					- offset.x, scale) + margin);
+			lastY = Math.min(lastY, Math.floorDiv(clip.y + clip.height - 1
+					- offset.y, scale) + margin);
+		}
+		return new Rectangle(firstX, firstY, Math.max(0, lastX - firstX + 1),
+				Math.max(0, lastY - firstY + 1));
+	}
+
+	/** Finds the units standing in a rectangle of cells by looking only in
+	 * the buckets that cover it, storing their ids in order in visibleIds
+	 * 
+	 * @param cells the cells to look in
+	 * @return the number of units found */
+	private int findVisibleUnits(Rectangle cells)
+	{
+		if (cells.isEmpty())
+			return 0;
+		int numFound = 0;
+		int firstBucketX = cells.x / UnitBuckets.BUCKET_SIZE;
+		int firstBucketY = cells.y / UnitBuckets.BUCKET_SIZE;
+		int lastBucketX = (cells.x + cells.width - 1) / UnitBuckets.BUCKET_SIZE;
+		int lastBucketY = (cells.y + cells.height - 1)
+				/ UnitBuckets.BUCKET_SIZE;
+		for (int bucketY = firstBucketY; bucketY <= lastBucketY; bucketY++)
+			for (int bucketX = firstBucketX; bucketX <= lastBucketX; bucketX++)
+				for (int i = 0; i < unitBuckets.size(bucketX, bucketY); i++)
+				{
+					int id = unitBuckets.get(bucketX, bucketY, i);
+					if (!cells.contains(unitPos.get(unitsById.get(id))))
+						continue;
+					if (numFound == visibleIds.length)
+						visibleIds = Arrays.copyOf(visibleIds, numFound * 2);
+					visibleIds[numFound++] = id;
+				}
+
+		// Units are drawn in the order of their ids, so that overlapping units
+		// are drawn the same way wherever the screen is
+		Arrays.sort(visibleIds, 0, numFound);
+		return numFound;
+	}
+
 	/** Handles mouse input to the board
 	 * 
 	 * @param event the mouse event */
 	public void getMouseMovement(MouseEvent event)
 	{
 		// Sets the location of the cursor
-		cursorLoc = getGridLoc(event.getPoint());
+		cursorLoc.setLocation((event.getX() - offset.x) / scale,
+				(event.getY() - offset.y) / scale);
 
-		// Recalculates the movement path based on the updated cursor location
-		if (movementGrid != null && !unitInMovement)
-		{
-			movementPath.clear();
-			createMovementPath(getGridLoc(event.getPoint()));
-		}
+		// The movement path is only recalculated on the next update, so any
+		// number of mouse events between updates cost a single path
+		cursorMoved = true;
+	}
+
+	/** Updates the board once per tick, recalculating the movement path if the
+	 * cursor has moved onto a different location since the last update */
+	public void update()
+	{
+		if (!cursorMoved || unitInMovement)
+			return;
+		cursorMoved = false;
+
+		int cell = isInBounds(cursorLoc.x, cursorLoc.y) ? getCell(cursorLoc)
+				: -1;
+		if (cell == pathCell)
+			return;
+		pathCell = cell;
+		if (cell == -1)
+			pathStart = pathEnd = 0;
+		else
+			createMovementPath(cell);
+	}
 
+	/** Moves the moving unit one step along its path, which is done once per
+	 * tick after the game has run */
+	public void step()
+	{
+		if (!unitInMovement)
+			return;
+		Point unitPoint = getUnitPos(movingUnit);
+		movingUnitFromX = unitPoint.x + movingUnitOffset.x / (double) scale;
+		movingUnitFromY = unitPoint.y + movingUnitOffset.y / (double) scale;
+		advanceMovingUnit();
+	}
+
+	/** Sets how far the screen is between the last update and the next one,
+	 * so that the moving unit is drawn partway through its step
+	 * 
+	 * @param progress the fraction of the time between updates that has
+	 *            passed, where 1 draws everything where the last update left
+	 *            it */
+	public void setRenderProgress(double progress)
+	{
+		renderProgress = Math.max(0, Math.min(1, progress));
 	}
 
 }
@@ -0,0 +1,377 @@
+package Board;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/** A list of the details of every board in a folder, such as their names and
+ * sizes, so that the boards can be listed without loading them. The list is
+ * saved between runs, and only the boards whose files have changed since
+ * then are read again.
+ *
+ * @author Shiranka Miskin
+ * @version January 2013 */
+public class BoardCatalog
+{
+
+	public static final String DEFAULT_CATALOG_FILE = "res/cache/boards.catalog";
+	private static final int MAGIC = 0x43514301;
+	private static final int VERSION = 1;
+	private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+	private File folder;
+	private File catalogFile;
+	private ArrayList<Entry> entries;
+	private Map<String, Entry> entriesByFile;
+	// Boards that could not be read, keyed by their name, modification time
+	// and size, which are not read again until their files change
+	private HashSet<String> failed;
+
+	private int entriesRead;
+
+	/** The details of a single board file */
+	public static class Entry implements Comparable<Entry>
+	{
+		private File file;
+		private String name;
+		private int width;
+		private int height;
+		private int maxPlayers;
+		private long fileSize;
+		private long lastModified;
+		private long hash;
+
+		/** Gets the text file of the board
+		 *
+		 * @return the .txt file */
+		public File getFile()
+		{
+			return file;
+		}
+
+		/** Gets the name of the board
+		 *
+		 * @return the name */
+		public String getName()
+		{
+			return name;
+		}
+
+		/** Gets the width of the board
+		 *
+		 * @return the width in tiles */
+		public int getWidth()
+		{
+			return width;
+		}
+
+		/** Gets the height of the board
+		 *
+		 * @return the height in tiles */
+		public int getHeight()
+		{
+			return height;
+		}
+
+		/** Gets the most players the board can hold
+		 *
+		 * @return the number of spawn points */
+		public int getMaxPlayers()
+		{
+			return maxPlayers;
+		}
+
+		/** Gets the hash of the contents of the board's file, which changes
+		 * whenever the board does
+		 *
+		 * @return the hash */
+		public long getHash()
+		{
+			return hash;
+		}
+
+		/** Loads the whole board
+		 *
+		 * @return the board
+		 * @throws IOException */
+		public Board load() throws IOException
+		{
+			return new Board(file);
+		}
+
+		/** Compares entries by the names of their boards
+		 *
+		 * @param other the entry to compare to
+		 * @return the order of the names */
+		public int compareTo(Entry other)
+		{
+			return name.compareTo(other.name);
+		}
+	}
+
+	/** Creates a catalog of the boards in a folder, saved to the default
+	 * catalog file
+	 *
+	 * @param folder the folder holding the .txt board files */
+	public BoardCatalog(File folder)
+	{
+		this(folder, new File(DEFAULT_CATALOG_FILE));
+	}
+
+	/** Creates a catalog of the boards in a folder, reading the catalog saved
+	 * last time if there is one
+	 *
+	 * @param folder the folder holding the .txt board files
+	 * @param catalogFile the file the catalog is saved to */
+	public BoardCatalog(File folder, File catalogFile)
+	{
+		this.folder = folder;
+		this.catalogFile = catalogFile;
+		entries = new ArrayList<Entry>();
+		entriesByFile = new HashMap<String, Entry>();
+		failed = new HashSet<String>();
+		try
+		{
+			readCatalog();
+		} catch (IOException e)
+		{
+			// A missing or damaged catalog is rebuilt from the boards
+			entriesByFile.clear();
+		}
+		refresh();
+	}
+
+	/** Brings the catalog up to date with the boards in the folder, reading
+	 * only the boards that were added or changed, and saves it if anything
+	 * changed. A board that could not be read is left out until its file
+	 * changes */
+	public void refresh()
+	{
+		File[] files = folder.listFiles();
+		if (files == null)
+			files = new File[0];
+
+		boolean changed = false;
+		Map<String, Entry> oldEntries = entriesByFile;
+		HashSet<String> oldFailed = failed;
+		entriesByFile = new HashMap<String, Entry>();
+		failed = new HashSet<String>();
+		entries = new ArrayList<Entry>();
+		for (File file : files)
+		{
+			if (!file.getName().endsWith(BoardFile.TEXT_EXTENSION))
+				continue;
+
+			Entry entry = oldEntries.remove(file.getName());
+			if (entry == null || entry.lastModified != file.lastModified()
+					|| entry.fileSize != file.length())
+			{
+				String key = file.getName() + "_" + file.lastModified() + "_"
+						+ file.length();
+				if (oldFailed.contains(key))
+				{
+					failed.add(key);
+					continue;
+				}
+				try
+				{
+					entry = readEntry(file);
+				} catch (IOException e)
+				{
+					e.printStackTrace();
+					failed.add(key);
+					continue;
+				}
+				changed = true;
+			}
+			entry.file = file;
+			entries.add(entry);
+			entriesByFile.put(file.getName(), entry);
+		}
+		// Boards that have been deleted are dropped from the catalog
+		if (!oldEntries.isEmpty())
+			changed = true;
+		Collections.sort(entries);
+
+		if (changed)
+		{
+			try
+			{
+				writeCatalog();
+			} catch (IOException e)
+			{
+				// The catalog only speeds up listing the boards, so they can
+				// still be listed without saving it
+			}
+		}
+	}
+
+	/** Gets the details of every board, sorted by name
+	 *
+	 * @return the entries */
+	public ArrayList<Entry> getEntries()
+	{
+		return entries;
+	}
+
+	/** Gets the number of board files that have been read to create entries,
+	 * rather than taken from the saved catalog
+	 *
+	 * @return the number of entries read */
+	public int getEntriesRead()
+	{
+		return entriesRead;
+	}
+
+	/** Reads the details of a board from the start of its text file, and
+	 * hashes the whole file
+	 *
+	 * @param file the .txt file
+	 * @return the entry for the board
+	 * @throws IOException if the file is not a valid board */
+	private Entry readEntry(File file) throws IOException
+	{
+		Entry entry = new Entry();
+		entry.file = file;
+		entry.fileSize = file.length();
+		entry.lastModified = file.lastModified();
+
+		BoardReader in = new BoardReader(file);
+		try
+		{
+			// Only the name, spawn points and size are needed, so the tiles
+			// themselves are never read
+			entry.name = in.readLine();
+			entry.maxPlayers = in.readInt("the number of spawn points");
+			if (entry.maxPlayers < 0)
+				throw in.error("The number of spawn points cannot be negative");
+			for (int i = 0; i < entry.maxPlayers * 2; i++)
+				in.readInt("a spawn point coordinate");
+			entry.width = in.readInt("the board width");
+			entry.height = in.readInt("the board height");
+			if (entry.width <= 0 || entry.height <= 0)
+				throw in.error("Invalid board size " + entry.width + " x "
+						+ entry.height);
+		} finally
+		{
+			in.close();
+		}
+
+		entry.hash = hash(file);
+		entriesRead++;
+		return entry;
+	}
+
+	/** Hashes the contents of a file
+	 *
+	 * @param file the file
+	 * @return the CRC-32 of the file
+	 * @throws IOException */
+	private static long hash(File file) throws IOException
+	{
+		CRC32 crc = new CRC32();
+		FileChannel channel = new FileInputStream(file).getChannel();
+		try
+		{
+			ByteBuffer buffer = ByteBuffer.allocate(HASH_BUFFER_SIZE);
+			while (channel.read(buffer) >= 0)
+			{
+				buffer.flip();
+				crc.update(buffer);
+				buffer.clear();
+			}
+		} finally
+		{
+			channel.close();
+		}
+		return crc.getValue();
+	}
+
+	/** Reads the catalog saved last time
+	 *
+	 * @throws IOException if there is no catalog or it cannot be read */
+	private void readCatalog() throws IOException
+	{
+		if (!catalogFile.isFile())
+			return;
+
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(catalogFile)));
+		try
+		{
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+				throw new IOException(catalogFile + " is not a board catalog");
+			int numEntries = in.readInt();
+			for (int i = 0; i < numEntries; i++)
+			{
+				String fileName = in.readUTF();
+				Entry entry = new Entry();
+				entry.file = new File(folder, fileName);
+				entry.name = in.readUTF();
+				entry.width = in.readInt();
+				entry.height = in.readInt();
+				entry.maxPlayers = in.readInt();
+				entry.fileSize = in.readLong();
+				entry.lastModified = in.readLong();
+				entry.hash = in.readLong();
+				entriesByFile.put(fileName, entry);
+			}
+		} finally
+		{
+			in.close();
+		}
+	}
+
+	/** Saves the catalog so that the boards do not need to be read next time
+	 *
+	 * @throws IOException */
+	private void writeCatalog() throws IOException
+	{
+		File parent = catalogFile.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.isDirectory())
+			parent.mkdirs();
+
+		new BoardFile.FileReplacer()
+		{
+			protected void write(File tempFile) throws IOException
+			{
+				DataOutputStream out = new DataOutputStream(
+						new BufferedOutputStream(new FileOutputStream(tempFile)));
+				try
+				{
+					out.writeInt(MAGIC);
+					out.writeInt(VERSION);
+					out.writeInt(entries.size());
+					for (Entry entry : entries)
+					{
+						out.writeUTF(entry.file.getName());
+						out.writeUTF(entry.name);
+						out.writeInt(entry.width);
+						out.writeInt(entry.height);
+						out.writeInt(entry.maxPlayers);
+						out.writeLong(entry.fileSize);
+						out.writeLong(entry.lastModified);
+						out.writeLong(entry.hash);
+					}
+				} finally
+				{
+					out.close();
+				}
+			}
+		}.replace(catalogFile);
+	}
+
+}
@@ -0,0 +1,729 @@
+package Board;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+
+/** Reads and writes the files boards are stored in. Boards are saved as text
+ * (.txt) so they can be edited by hand, and also in a binary format (.cqb) that
+ * can be loaded far faster. A text board is loaded from its binary copy
+ * whenever that copy is at least as new as the text, and the binary copy is
+ * created the first time the text is loaded.
+ *
+ * The binary format is, in big endian order: a magic number and a format
+ * version, the name of the board, the spawn points, the width and height, the
+ * names of the tile types used, then a byte per location giving its tile type
+ * and a short per location giving its cost, row by row.
+ *
+ * Huge boards are not read all at once. Their terrain keeps the binary file
+ * open and reads each chunk from it the first time the chunk is used.
+ *
+ * @author Shiranka Miskin
+ * @version January 2013 */
+public class BoardFile
+{
+
+	public static final String TEXT_EXTENSION = ".txt";
+	public static final String BINARY_EXTENSION = ".cqb";
+	private static final int MAGIC = 0x43514201;
+	private static final int VERSION = 1;
+	// The number of cells copied into the terrain at once
+	private static final int BLOCK_CELLS = 64 * 1024;
+	private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private String name;
+	private ArrayList<Point> spawnPoints;
+	private Dimension size;
+	private Terrain terrain;
+
+	/** Creates the contents of a board file
+	 *
+	 * @param name the name of the board
+	 * @param spawnPoints the spawn points of the board
+	 * @param size the size of the board
+	 * @param terrain the terrain of the board */
+	private BoardFile(String name, ArrayList<Point> spawnPoints,
+			Dimension size, Terrain terrain)
+	{
+		this.name = name;
+		this.spawnPoints = spawnPoints;
+		this.size = size;
+		this.terrain = terrain;
+	}
+
+	/** Loads a board file, using the binary copy of a text board if it is up
+	 * to date and falling back to the text if the binary copy cannot be read
+	 *
+	 * @param file the .txt or .cqb file to load
+	 * @return the contents of the file
+	 * @throws IOException if the file cannot be read or is not a valid board */
+	public static BoardFile load(File file) throws IOException
+	{
+		if (file.getName().endsWith(BINARY_EXTENSION))
+			return readBinary(file);
+
+		File binary = getBinaryFile(file);
+		if (binary.isFile() && binary.lastModified() >= file.lastModified())
+		{
+			try
+			{
+				return readBinary(binary);
+			} catch (IOException e)
+			{
+				// An unreadable binary copy is replaced by loading the text
+			}
+		}
+
+		BoardFile contents = readText(file);
+		try
+		{
+			contents.writeBinary(binary);
+		} catch (IOException e)
+		{
+			// The binary copy only speeds up loading, so the board can still
+			// be used without it
+		}
+		return contents;
+	}
+
+	/** Gets the binary copy of a text board file
+	 *
+	 * @param textFile the .txt file
+	 * @return the .cqb file beside it */
+	public static File getBinaryFile(File textFile)
+	{
+		String fileName = textFile.getName();
+		if (fileName.endsWith(TEXT_EXTENSION))
+			fileName = fileName.substring(0, fileName.length()
+					- TEXT_EXTENSION.length());
+		return new File(textFile.getParentFile(), fileName + BINARY_EXTENSION);
+	}
+
+	/** Reads a board from its text format
+	 *
+	 * @param file the .txt file
+	 * @return the contents of the file
+	 * @throws IOException if the file cannot be read or is not a valid board,
+	 *             giving the line and column of the problem */
+	public static BoardFile readText(File file) throws IOException
+	{
+		BoardReader in = new BoardReader(file);
+		try
+		{
+			// Reads in the name of the map
+			String name = in.readLine();
+
+			// Loads all the spawn points of the map
+			int numSpawnPoints = in.readInt("the number of spawn points");
+			if (numSpawnPoints < 0)
+				throw in.error("The number of spawn points cannot be negative");
+			ArrayList<Point> spawnPoints = new ArrayList<Point>(numSpawnPoints);
+			for (int i = 0; i < numSpawnPoints; i++)
+			{
+				spawnPoints.add(new Point(in.readInt("a spawn point x"), in
+						.readInt("a spawn point y")));
+			}
+
+			// Loads the board details itself, with the size of the board
+			// and each tile and cost of that tile
+			Dimension size = new Dimension(in.readInt("the board width"),
+					in.readInt("the board height"));
+			if (size.width <= 0 || size.height <= 0
+					|| (long) size.width * size.height > Integer.MAX_VALUE)
+				throw in.error("Invalid board size " + size.width + " x "
+						+ size.height);
+			Terrain terrain = Terrain.create(size.width, size.height);
+			for (int cell = 0; cell < size.width * size.height; cell++)
+				terrain.setType(cell, in.readTileType());
+			for (int cell = 0; cell < size.width * size.height; cell++)
+				terrain.setCost(cell, in.readInt("a tile cost"));
+
+			return new BoardFile(name, spawnPoints, size, terrain);
+		} finally
+		{
+			in.close();
+		}
+	}
+
+	/** Reads a board from its binary format. The file is read through a
+	 * channel rather than mapped into memory, since a mapping is only let go
+	 * of when it is garbage collected and holds the file open until then,
+	 * which stops a later save from replacing it on some systems. The terrain
+	 * of a huge board is left in the file to be read a chunk at a time
+	 *
+	 * @param file the .cqb file
+	 * @return the contents of the file
+	 * @throws IOException if the file cannot be read or is not a board */
+	public static BoardFile readBinary(File file) throws IOException
+	{
+		// Channels opened this way do not stop the file being replaced while
+		// they are open, even on Windows
+		FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ);
+		boolean keepOpen = false;
+		try
+		{
+			CountingInputStream counter = new CountingInputStream(
+					new BufferedInputStream(Channels.newInputStream(channel),
+							READ_BUFFER_SIZE));
+			DataInputStream in = new DataInputStream(counter);
+
+			if (in.readInt() != MAGIC)
+				throw new IOException(file + " is not a board file");
+			int version = in.readInt();
+			if (version != VERSION)
+				throw new IOException(file + " has unsupported version "
+						+ version);
+
+			String name = readString(in);
+			int numSpawnPoints = in.readInt();
+			ArrayList<Point> spawnPoints = new ArrayList<Point>(numSpawnPoints);
+			for (int i = 0; i < numSpawnPoints; i++)
+				spawnPoints.add(new Point(in.readInt(), in.readInt()));
+			Dimension size = new Dimension(in.readInt(), in.readInt());
+
+			// Converts the file's tile types to the ids used by this game
+			int numTypes = in.readInt();
+			byte[] typeIds = new byte[256];
+			for (int i = 0; i < numTypes; i++)
+				typeIds[i] = (byte) TileType.get(readString(in)).getId();
+
+			// The ids only need converting if they differ from the file's
+			boolean sameIds = true;
+			for (int i = 0; i < numTypes; i++)
+				sameIds &= typeIds[i] == i;
+
+			if (size.width <= 0 || size.height <= 0
+					|| (long) size.width * size.height > Integer.MAX_VALUE)
+				throw new IOException(file + " has invalid board size "
+						+ size.width + " x " + size.height);
+			int numCells = size.width * size.height;
+			if (counter.getCount() + 3L * numCells > channel.size())
+				throw new IOException(file
+						+ " ended before the whole board was read");
+
+			// The cells of a huge board are read from the file as they are
+			// used
+			if ((long) numCells >= Terrain.CHUNKED_CELLS)
+			{
+				ChunkedTerrain terrain = new ChunkedTerrain(size.width,
+						size.height, file, channel, counter.getCount(),
+						sameIds ? null : typeIds);
+				keepOpen = true;
+				return new BoardFile(name, spawnPoints, size, terrain);
+			}
+
+			// Copies the terrain in a block of cells at a time
+			Terrain terrain = Terrain.create(size.width, size.height);
+			byte[] types = new byte[Math.min(numCells, BLOCK_CELLS)];
+			for (int cell = 0; cell < numCells; cell += types.length)
+			{
+				int length = Math.min(types.length, numCells - cell);
+				in.readFully(types, 0, length);
+				if (!sameIds)
+					for (int i = 0; i < length; i++)
+						types[i] = typeIds[types[i] & 0xFF];
+				terrain.setTypes(cell, types, length);
+			}
+			short[] costs = new short[types.length];
+			byte[] costBytes = new byte[costs.length * 2];
+			for (int cell = 0; cell < numCells; cell += costs.length)
+			{
+				int length = Math.min(costs.length, numCells - cell);
+				in.readFully(costBytes, 0, length * 2);
+				ByteBuffer.wrap(costBytes).asShortBuffer().get(costs, 0, length);
+				terrain.setCosts(cell, costs, length);
+			}
+			return new BoardFile(name, spawnPoints, size, terrain);
+		} catch (EOFException e)
+		{
+			throw new IOException(file + " ended before the whole board was read",
+					e);
+		} catch (RuntimeException e)
+		{
+			// Corrupted sizes and counts lead to impossible arrays and ids
+			throw new IOException(file + " is not a valid board file", e);
+		} finally
+		{
+			if (!keepOpen)
+				channel.close();
+		}
+	}
+
+	/** Copies the contents of a board so they can be written while the board
+	 * continues to change. The terrain of a huge board shares its chunks with
+	 * the board until either changes them, so only the chunks in memory are
+	 * looked at rather than every cell
+	 *
+	 * @param board the board to copy
+	 * @return the copied contents */
+	public static BoardFile snapshot(Board board)
+	{
+		ArrayList<Point> spawnPoints = new ArrayList<Point>();
+		for (Point p : board.getSpawnPoints())
+			spawnPoints.add(new Point(p));
+		return new BoardFile(board.getName(), spawnPoints, new Dimension(
+				board.getGridWidth(), board.getGridHeight()), board
+				.getTerrain().copy());
+	}
+
+	/** Saves a board to a text file along with its binary copy, without
+	 * copying it first. The board must not change until this returns
+	 *
+	 * @param board the board to save
+	 * @param textFile the .txt file to write to
+	 * @throws IOException */
+	public static void save(Board board, File textFile) throws IOException
+	{
+		new BoardFile(board.getName(), board.getSpawnPoints(), new Dimension(
+				board.getGridWidth(), board.getGridHeight()), board.getTerrain())
+				.save(textFile);
+	}
+
+	/** Saves these contents to a text file along with its binary copy
+	 *
+	 * @param textFile the .txt file to write to
+	 * @throws IOException */
+	public void save(File textFile) throws IOException
+	{
+		writeText(textFile);
+		writeBinary(getBinaryFile(textFile));
+	}
+
+	/** Writes these contents in the text format. The file is only replaced
+	 * once the new contents are safely on disk, so a failed write never
+	 * leaves a damaged board behind
+	 *
+	 * @param file the .txt file to write to
+	 * @throws IOException */
+	public void writeText(final File file) throws IOException
+	{
+		new FileReplacer()
+		{
+			protected void write(File tempFile) throws IOException
+			{
+				RandomAccessFile out = new RandomAccessFile(tempFile, "rw");
+				try
+				{
+					out.setLength(0);
+					FileChannel channel = out.getChannel();
+					ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+
+					putText(channel, buffer, name + "\r\n");
+
+					// Write the number of spawn points followed by
+					// the coordinates of all of them
+					putText(channel, buffer, spawnPoints.size() + "\r\n");
+					for (Point p : spawnPoints)
+						putText(channel, buffer, p.x + " " + p.y + "\r\n");
+
+					// Write the dimensions followed by a grid of each type
+					// of tile, followed by another grid of each tile cost
+					putText(channel, buffer, size.width + " " + size.height
+							+ "\r\n");
+					byte[][] typeNames = new byte[TileType.MAX_TYPES][];
+					for (int y = 0; y < size.height; y++)
+					{
+						for (int x = 0; x < size.width; x++)
+						{
+							int type = terrain.getType(y * size.width + x);
+							if (typeNames[type] == null)
+								typeNames[type] = (TileType.get(type).getName()
+										+ " ").getBytes(UTF8);
+							ensureSpace(channel, buffer,
+									typeNames[type].length);
+							buffer.put(typeNames[type]);
+						}
+						putText(channel, buffer, "\r\n");
+					}
+					for (int y = 0; y < size.height; y++)
+					{
+						for (int x = 0; x < size.width; x++)
+							putNumber(channel, buffer,
+									terrain.getCost(y * size.width + x));
+						putText(channel, buffer, "\r\n");
+					}
+
+					flush(channel, buffer);
+					channel.force(true);
+				} finally
+				{
+					out.close();
+				}
+			}
+		}.replace(file);
+	}
+
+	/** Writes these contents in the binary format, only replacing the file
+	 * once the new contents are safely on disk
+	 *
+	 * @param file the .cqb file to write to
+	 * @throws IOException */
+	public void writeBinary(final File file) throws IOException
+	{
+		// Finds which tile types are used so only their names are stored
+		final int[] fileTypes = new int[TileType.MAX_TYPES];
+		final ArrayList<String> typeNames = new ArrayList<String>();
+		for (int cell = 0; cell < size.width * size.height; cell++)
+		{
+			int type = terrain.getType(cell);
+			if (fileTypes[type] == 0)
+			{
+				typeNames.add(TileType.get(type).getName());
+				fileTypes[type] = typeNames.size();
+			}
+		}
+
+		new FileReplacer()
+		{
+			protected void write(File tempFile) throws IOException
+			{
+				RandomAccessFile out = new RandomAccessFile(tempFile, "rw");
+				try
+				{
+					out.setLength(0);
+					FileChannel channel = out.getChannel();
+					ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+
+					buffer.putInt(MAGIC);
+					buffer.putInt(VERSION);
+					writeString(channel, buffer, name);
+					ensureSpace(channel, buffer, 4);
+					buffer.putInt(spawnPoints.size());
+					for (Point p : spawnPoints)
+					{
+						ensureSpace(channel, buffer, 8);
+						buffer.putInt(p.x);
+						buffer.putInt(p.y);
+					}
+					ensureSpace(channel, buffer, 12);
+					buffer.putInt(size.width);
+					buffer.putInt(size.height);
+					buffer.putInt(typeNames.size());
+					for (String typeName : typeNames)
+						writeString(channel, buffer, typeName);
+
+					for (int cell = 0; cell < size.width * size.height; cell++)
+					{
+						ensureSpace(channel, buffer, 1);
+						buffer.put((byte) (fileTypes[terrain.getType(cell)]
+								- 1));
+					}
+					for (int cell = 0; cell < size.width * size.height; cell++)
+					{
+						ensureSpace(channel, buffer, 2);
+						buffer.putShort((short) terrain.getCost(cell));
+					}
+					flush(channel, buffer);
+					channel.force(true);
+				} finally
+				{
+					out.close();
+				}
+				// The terrain may still be reading cells from the file it is
+				// about to replace
+				terrain.detach(file);
+			}
+		}.replace(file);
+	}
+
+	/** Creates the temporary file a file is written to before it replaces the
+	 * original. Each one has its own name, so two threads writing the same
+	 * file never write into each other's temporary file
+	 *
+	 * @param file the file being written
+	 * @return the temporary file beside it
+	 * @throws IOException */
+	static File getTempFile(File file) throws IOException
+	{
+		return File.createTempFile(file.getName() + ".", ".tmp", file
+				.getAbsoluteFile().getParentFile());
+	}
+
+	/** Replaces a file with a newly written one in a single step where the
+	 * file system allows it
+	 *
+	 * @param source the newly written file
+	 * @param target the file to replace
+	 * @throws IOException */
+	static void replaceFile(File source, File target)
+			throws IOException
+	{
+		try
+		{
+			Files.move(source.toPath(), target.toPath(),
+					StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e)
+		{
+			Files.move(source.toPath(), target.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/** Writes a file by writing a temporary file beside it and then replacing
+	 * the file with it. If anything goes wrong the temporary file is deleted,
+	 * so neither a damaged file nor the temporary file is left behind
+	 *
+	 * @author Shiranka Miskin
+	 * @version January 2013 */
+	static abstract class FileReplacer
+	{
+
+		/** Writes the new contents of the file
+		 *
+		 * @param tempFile the temporary file to write to
+		 * @throws IOException */
+		protected abstract void write(File tempFile) throws IOException;
+
+		/** Writes the new contents to a temporary file and replaces the file
+		 * with it
+		 *
+		 * @param file the file to replace
+		 * @throws IOException */
+		void replace(File file) throws IOException
+		{
+			File tempFile = getTempFile(file);
+			boolean replaced = false;
+			try
+			{
+				write(tempFile);
+				replaceFile(tempFile, file);
+				replaced = true;
+			} finally
+			{
+				if (!replaced)
+					tempFile.delete();
+			}
+		}
+	}
+
+	/** Converts text board files to the binary format
+	 *
+	 * @param args the text files to convert, or none to convert every board
+	 *            in res/boards/ */
+	public static void main(String[] args)
+	{
+		File[] files;
+		if (args.length > 0)
+		{
+			files = new File[args.length];
+			for (int i = 0; i < args.length; i++)
+				files[i] = new File(args[i]);
+		} else
+			files = new File("res/boards/").listFiles();
+
+		for (File file : files)
+		{
+			if (!file.getName().endsWith(TEXT_EXTENSION))
+				continue;
+			try
+			{
+				readText(file).writeBinary(getBinaryFile(file));
+				System.out.println("Converted " + file);
+			} catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/** Gets the name of the board
+	 *
+	 * @return the name */
+	public String getName()
+	{
+		return name;
+	}
+
+	/** Gets the spawn points of the board
+	 *
+	 * @return the spawn points */
+	public ArrayList<Point> getSpawnPoints()
+	{
+		return spawnPoints;
+	}
+
+	/** Gets the size of the board
+	 *
+	 * @return the width and height of the board */
+	public Dimension getSize()
+	{
+		return size;
+	}
+
+	/** Gets the terrain of the board
+	 *
+	 * @return the terrain */
+	public Terrain getTerrain()
+	{
+		return terrain;
+	}
+
+	/** Writes text as UTF-8 bytes
+	 *
+	 * @param channel the channel being written to
+	 * @param buffer the buffer to write into
+	 * @param text the text to write
+	 * @throws IOException */
+	private static void putText(FileChannel channel, ByteBuffer buffer,
+			String text) throws IOException
+	{
+		byte[] bytes = text.getBytes(UTF8);
+		for (byte b : bytes)
+		{
+			ensureSpace(channel, buffer, 1);
+			buffer.put(b);
+		}
+	}
+
+	/** Writes a number as text followed by a space
+	 *
+	 * @param channel the channel being written to
+	 * @param buffer the buffer to write into
+	 * @param number the number to write
+	 * @throws IOException */
+	private static void putNumber(FileChannel channel, ByteBuffer buffer,
+			int number) throws IOException
+	{
+		ensureSpace(channel, buffer, 12);
+		if (number < 0)
+		{
+			buffer.put((byte) '-');
+			number = -number;
+		}
+
+		// Finds the largest power of ten in the number to write its digits
+		// from the front
+		int place = 1;
+		while (number / place >= 10)
+			place *= 10;
+		for (; place > 0; place /= 10)
+			buffer.put((byte) ('0' + number / place % 10));
+		buffer.put((byte) ' ');
+	}
+
+	/** Counts the bytes read through it, so that the position of the cells
+	 * in a board file is known once the rest of the file has been read
+	 *
+	 * @author Shiranka Miskin
+	 * @version January 2013 */
+	private static class CountingInputStream extends FilterInputStream
+	{
+		private long count;
+
+		private CountingInputStream(InputStream in)
+		{
+			super(in);
+		}
+
+		public int read() throws IOException
+		{
+			int b = super.read();
+			if (b != -1)
+				count++;
+			return b;
+		}
+
+		public int read(byte[] bytes, int offset, int length)
+				throws IOException
+		{
+			int read = super.read(bytes, offset, length);
+			if (read > 0)
+				count += read;
+			return read;
+		}
+
+		public long skip(long n) throws IOException
+		{
+			long skipped = super.skip(n);
+			count += skipped;
+			return skipped;
+		}
+
+		/** Gets the number of bytes read so far
+		 *
+		 * @return the number of bytes */
+		private long getCount()
+		{
+			return count;
+		}
+	}
+
+	/** Reads a string stored as its length followed by its UTF-8 bytes
+	 *
+	 * @param in the stream to read from
+	 * @return the string
+	 * @throws IOException */
+	private static String readString(DataInputStream in) throws IOException
+	{
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	/** Writes a string as its length followed by its UTF-8 bytes
+	 *
+	 * @param channel the channel being written to
+	 * @param buffer the buffer to write into
+	 * @param string the string to write
+	 * @throws IOException */
+	private static void writeString(FileChannel channel, ByteBuffer buffer,
+			String string) throws IOException
+	{
+		byte[] bytes = string.getBytes(UTF8);
+		ensureSpace(channel, buffer, 4);
+		buffer.putInt(bytes.length);
+		for (byte b : bytes)
+		{
+			ensureSpace(channel, buffer, 1);
+			buffer.put(b);
+		}
+	}
+
+	/** Writes out the buffer if it does not have enough space left
+	 *
+	 * @param channel the channel being written to
+	 * @param buffer the buffer to write into
+	 * @param bytes the number of bytes that are about to be added
+	 * @throws IOException */
+	private static void ensureSpace(FileChannel channel, ByteBuffer buffer,
+			int bytes) throws IOException
+	{
+		if (buffer.remaining() < bytes)
+			flush(channel, buffer);
+	}
+
+	/** Writes everything in the buffer to the channel and empties it
+	 *
+	 * @param channel the channel being written to
+	 * @param buffer the buffer to write
+	 * @throws IOException */
+	private static void flush(FileChannel channel, ByteBuffer buffer)
+			throws IOException
+	{
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+
+}
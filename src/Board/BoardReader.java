@@ -0,0 +1,254 @@
+package Board;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/** Reads the values of a text board file one token at a time, straight from
+ * the bytes of the file. Tile names are turned into tile type ids without
+ * creating a string for each one, and any problem with the file is reported
+ * with the line and column it was found at.
+ *
+ * @author Shiranka Miskin
+ * @version January 2013 */
+public class BoardReader
+{
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private String source;
+	private FileChannel channel;
+	private ByteBuffer buffer;
+
+	// The position of the next byte
+	private int line;
+	private int column;
+
+	// The last token read and where it started
+	private byte[] token;
+	private int tokenLength;
+	private int tokenLine;
+	private int tokenColumn;
+
+	// The tile names read so far and their type ids
+	private byte[][] typeNames;
+	private int[] typeIds;
+	private int numTypeNames;
+
+	/** Opens a text board file for reading
+	 *
+	 * @param file the file to read
+	 * @throws FileNotFoundException */
+	public BoardReader(File file) throws FileNotFoundException
+	{
+		source = file.getName();
+		channel = new FileInputStream(file).getChannel();
+		buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		buffer.flip();
+		line = 1;
+		column = 1;
+		token = new byte[32];
+		typeNames = new byte[16][];
+		typeIds = new int[16];
+	}
+
+	/** Reads the rest of the current line
+	 *
+	 * @return the line, without its line break
+	 * @throws IOException if the file ends first */
+	public String readLine() throws IOException
+	{
+		tokenLine = line;
+		tokenColumn = column;
+		tokenLength = 0;
+		int b = read();
+		if (b == -1)
+			throw error("Expected a line but reached the end of the file");
+		while (b != -1 && b != '\n')
+		{
+			addToToken(b);
+			b = read();
+		}
+		if (tokenLength > 0 && token[tokenLength - 1] == '\r')
+			tokenLength--;
+		return new String(token, 0, tokenLength, UTF8);
+	}
+
+	/** Reads a whole number
+	 *
+	 * @param description what the number is, used to describe errors
+	 * @return the number
+	 * @throws IOException if the next token is not a number */
+	public int readInt(String description) throws IOException
+	{
+		if (!readToken())
+			throw error("Expected " + description
+					+ " but reached the end of the file");
+
+		int i = 0;
+		boolean negative = token[0] == '-';
+		if (negative)
+			i++;
+		if (i == tokenLength)
+			throw error("Expected " + description + " but found \""
+					+ getToken() + "\"");
+
+		long value = 0;
+		for (; i < tokenLength; i++)
+		{
+			int digit = token[i] - '0';
+			if (digit < 0 || digit > 9)
+				throw error("Expected " + description + " but found \""
+						+ getToken() + "\"");
+			value = value * 10 + digit;
+			if (value > Integer.MAX_VALUE)
+				throw error("The number \"" + getToken() + "\" is too large");
+		}
+		return (int) (negative ? -value : value);
+	}
+
+	/** Reads the name of a tile and finds its type
+	 *
+	 * @return the id of the tile type
+	 * @throws IOException if there is no tile name */
+	public int readTileType() throws IOException
+	{
+		if (!readToken())
+			throw error("Expected a tile name but reached the end of the file");
+
+		// Most boards only use a few types, so a search of the names already
+		// seen is quicker than creating a string to look up
+		for (int i = 0; i < numTypeNames; i++)
+			if (typeNames[i].length == tokenLength && matchesToken(typeNames[i]))
+				return typeIds[i];
+
+		if (numTypeNames == typeNames.length)
+		{
+			typeNames = Arrays.copyOf(typeNames, numTypeNames * 2);
+			typeIds = Arrays.copyOf(typeIds, numTypeNames * 2);
+		}
+		typeNames[numTypeNames] = Arrays.copyOf(token, tokenLength);
+		try
+		{
+			typeIds[numTypeNames] = TileType.get(getToken()).getId();
+		} catch (IllegalStateException e)
+		{
+			throw error(e.getMessage());
+		}
+		return typeIds[numTypeNames++];
+	}
+
+	/** Creates an exception describing a problem at the last token read
+	 *
+	 * @param message the problem
+	 * @return the exception to throw */
+	public IOException error(String message)
+	{
+		return new IOException(source + " line " + tokenLine + ", column "
+				+ tokenColumn + ": " + message);
+	}
+
+	/** Closes the file
+	 *
+	 * @throws IOException */
+	public void close() throws IOException
+	{
+		channel.close();
+	}
+
+	/** Reads the next token, skipping any whitespace before it
+	 *
+	 * @return true if a token was read, false if the file has ended
+	 * @throws IOException */
+	private boolean readToken() throws IOException
+	{
+		tokenLength = 0;
+		int b = read();
+		while (isWhitespace(b))
+			b = read();
+		tokenLine = line;
+		tokenColumn = column - 1;
+		if (b == -1)
+			return false;
+
+		while (b != -1 && !isWhitespace(b))
+		{
+			addToToken(b);
+			b = read();
+		}
+		return true;
+	}
+
+	/** Reads the next byte of the file
+	 *
+	 * @return the byte, or -1 if the file has ended
+	 * @throws IOException */
+	private int read() throws IOException
+	{
+		if (!buffer.hasRemaining())
+		{
+			buffer.clear();
+			int bytesRead = channel.read(buffer);
+			while (bytesRead == 0)
+				bytesRead = channel.read(buffer);
+			buffer.flip();
+			if (bytesRead < 0)
+				return -1;
+		}
+
+		int b = buffer.get() & 0xFF;
+		if (b == '\n')
+		{
+			line++;
+			column = 1;
+		} else
+			column++;
+		return b;
+	}
+
+	/** Determines if a byte separates tokens
+	 *
+	 * @param b the byte
+	 * @return true if it is whitespace, false if not */
+	private static boolean isWhitespace(int b)
+	{
+		return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+	}
+
+	/** Adds a byte to the end of the current token
+	 *
+	 * @param b the byte to add */
+	private void addToToken(int b)
+	{
+		if (tokenLength == token.length)
+			token = Arrays.copyOf(token, tokenLength * 2);
+		token[tokenLength++] = (byte) b;
+	}
+
+	/** Determines if the current token is made of certain bytes
+	 *
+	 * @param bytes the bytes to compare with, of the same length as the token
+	 * @return true if they match, false if not */
+	private boolean matchesToken(byte[] bytes)
+	{
+		for (int i = 0; i < tokenLength; i++)
+			if (bytes[i] != token[i])
+				return false;
+		return true;
+	}
+
+	/** Gets the current token as a string
+	 *
+	 * @return the token */
+	private String getToken()
+	{
+		return new String(token, 0, tokenLength, UTF8);
+	}
+
+}
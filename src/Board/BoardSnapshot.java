@@ -0,0 +1,407 @@
+package Board;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import Game.Player;
+
+/** A copy of the costs of every location on a board and the position, owner
+ * and stats of every unit at one point in time. A snapshot never changes once
+ * it is taken, so it can be read by any number of threads while the board
+ * itself carries on changing.
+ *
+ * Moving or damaging a unit in a snapshot gives a new snapshot rather than
+ * changing the old one. Only the arrays the change touches are copied, and the
+ * rest are shared with the old snapshot, so exploring many possible moves
+ * from a single snapshot stays cheap.
+ *
+ * Units are identified by the same ids the board gives them, where id 0 is
+ * never used so that an empty location can have an occupant of 0.
+ *
+ * @author Shiranka Miskin
+ * @version January 2013 */
+public class BoardSnapshot extends BoardView
+{
+
+	private static final int PAGE_SIZE = 4096;
+
+	// Shared by every snapshot made from the same board
+	private final int width;
+	private final int height;
+	private final int terrainVersion;
+	private final short[] costs;
+	private final Unit[] units;
+	private final Player[] players;
+
+	private int occupancyVersion;
+	// The id of the unit on each cell, or 0 if it is empty, split into pages
+	// that are only created once a unit stands in them
+	private int[][] occupants;
+	// The cell each unit is on, or -1 if it is not on the board
+	private int[] positions;
+	// The index of the player owning each unit
+	private int[] owners;
+	private int[] health;
+	private int[] attack;
+	private int[] movement;
+	private int[] range;
+
+	/** Takes a snapshot of a board
+	 *
+	 * @param board the board to copy */
+	BoardSnapshot(Board board)
+	{
+		width = board.getGridWidth();
+		height = board.getGridHeight();
+		terrainVersion = board.getTerrainVersion();
+		occupancyVersion = board.getOccupancyVersion();
+		Terrain terrain = board.getTerrain();
+		costs = new short[width * height];
+		for (int cell = 0; cell < costs.length; cell++)
+			costs[cell] = (short) terrain.getCost(cell);
+
+		int numIds = board.getNumUnitIds();
+		units = new Unit[numIds];
+		occupants = new int[(costs.length + PAGE_SIZE - 1) / PAGE_SIZE][];
+		positions = new int[numIds];
+		owners = new int[numIds];
+		health = new int[numIds];
+		attack = new int[numIds];
+		movement = new int[numIds];
+		range = new int[numIds];
+		Arrays.fill(positions, -1);
+
+		ArrayList<Player> foundPlayers = new ArrayList<Player>();
+		for (Unit unit : board.getUnits())
+		{
+			int id = board.getUnitId(unit);
+			Point pos = board.getUnitPos(unit);
+			units[id] = unit;
+			positions[id] = pos.y * width + pos.x;
+			getPage(occupants, positions[id])[positions[id] % PAGE_SIZE] = id;
+
+			int owner = foundPlayers.indexOf(unit.getPlayer());
+			if (owner == -1)
+			{
+				owner = foundPlayers.size();
+				foundPlayers.add(unit.getPlayer());
+			}
+			owners[id] = owner;
+
+			StatSet stats = unit.getCurrentStats();
+			health[id] = stats.getHealth();
+			attack[id] = stats.getAttack();
+			movement[id] = stats.getMovement();
+			range[id] = stats.getRange();
+		}
+		players = foundPlayers.toArray(new Player[foundPlayers.size()]);
+	}
+
+	/** Creates a snapshot sharing every array with another, so that the
+	 * arrays that change can then be replaced with copies
+	 *
+	 * @param source the snapshot to share with */
+	private BoardSnapshot(BoardSnapshot source)
+	{
+		width = source.width;
+		height = source.height;
+		terrainVersion = source.terrainVersion;
+		costs = source.costs;
+		units = source.units;
+		players = source.players;
+		occupants = source.occupants;
+		positions = source.positions;
+		owners = source.owners;
+		health = source.health;
+		attack = source.attack;
+		movement = source.movement;
+		range = source.range;
+
+		// The occupants no longer match any version of the board
+		occupancyVersion = -1;
+	}
+
+	/** Gets a snapshot with a unit moved to another location
+	 *
+	 * @param id the id of the unit to move
+	 * @param x the x coordinate to move the unit to
+	 * @param y the y coordinate to move the unit to
+	 * @return the new snapshot */
+	public BoardSnapshot moveUnit(int id, int x, int y)
+	{
+		if (!hasUnit(id))
+			throw new IllegalStateException("Unit " + id + " is not on the board");
+		BoardSnapshot moved = new BoardSnapshot(this);
+		moved.occupants = occupants.clone();
+		moved.positions = positions.clone();
+
+		int oldCell = positions[id];
+		if (moved.getOccupant(oldCell) == id)
+			moved.setOccupant(oldCell, 0);
+		moved.setOccupant(y * width + x, id);
+		moved.positions[id] = y * width + x;
+		return moved;
+	}
+
+	/** Gets a snapshot with a unit damaged by an amount, where a unit left
+	 * without health is taken off the board
+	 *
+	 * @param id the id of the unit to damage
+	 * @param amount the amount of health to take away
+	 * @return the new snapshot */
+	public BoardSnapshot damageUnit(int id, int amount)
+	{
+		if (!hasUnit(id))
+			throw new IllegalStateException("Unit " + id + " is not on the board");
+		BoardSnapshot damaged = new BoardSnapshot(this);
+		damaged.health = health.clone();
+		damaged.health[id] -= amount;
+		if (damaged.health[id] <= 0)
+		{
+			damaged.occupants = occupants.clone();
+			damaged.positions = positions.clone();
+			if (damaged.getOccupant(positions[id]) == id)
+				damaged.setOccupant(positions[id], 0);
+			damaged.positions[id] = -1;
+		}
+		return damaged;
+	}
+
+	/** Gets the width of the grid
+	 *
+	 * @return the width of the grid */
+	public int getGridWidth()
+	{
+		return width;
+	}
+
+	/** Gets the height of the grid
+	 *
+	 * @return the height of the grid */
+	public int getGridHeight()
+	{
+		return height;
+	}
+
+	/** Gets the terrain version of the board when the snapshot was taken
+	 *
+	 * @return the terrain version */
+	public int getTerrainVersion()
+	{
+		return terrainVersion;
+	}
+
+	/** Gets the occupancy version of the board when the snapshot was taken
+	 *
+	 * @return the occupancy version, or -1 if a unit has been moved or taken
+	 *         off the board since */
+	public int getOccupancyVersion()
+	{
+		return occupancyVersion;
+	}
+
+	/** Gets the cost of moving onto a tile
+	 *
+	 * @param x the x coordinate of the tile
+	 * @param y the y coordinate of the tile
+	 * @return the cost of the tile */
+	public int getCost(int x, int y)
+	{
+		return costs[y * width + x];
+	}
+
+	/** Gets the id of the unit on a location
+	 *
+	 * @param x the x coordinate of the location
+	 * @param y the y coordinate of the location
+	 * @return the unit id, or 0 if the location is empty */
+	public int getOccupant(int x, int y)
+	{
+		return getOccupant(y * width + x);
+	}
+
+	/** Returns if a location can be traversed by a unit
+	 *
+	 * @param x the x coordinate to check
+	 * @param y the y coordinate to check
+	 * @return true if a unit can walk over the point, false if they cannot */
+	public boolean isWalkable(int x, int y)
+	{
+		return costs[y * width + x] != Board.MAX_TILE_COST
+				&& getOccupant(y * width + x) == 0;
+	}
+
+	/** Returns if a point is within the board bounds and traversable
+	 *
+	 * @param x the x coordinate of the point
+	 * @param y the y coordinate of the point
+	 * @return true if the location is valid, false if not */
+	public boolean isValid(int x, int y)
+	{
+		return x >= 0 && y >= 0 && x < width && y < height
+				&& costs[y * width + x] < Board.MAX_TILE_COST;
+	}
+
+	/** Gets the number of unit ids, which is one more than the highest id
+	 *
+	 * @return the number of ids */
+	public int getNumUnitIds()
+	{
+		return units.length;
+	}
+
+	/** Determines if a unit is on the board
+	 *
+	 * @param id the id of the unit
+	 * @return true if the unit is on the board, false if not */
+	public boolean hasUnit(int id)
+	{
+		return id > 0 && id < positions.length && positions[id] != -1;
+	}
+
+	/** Gets the unit with an id, which is the live unit and not a copy of it
+	 *
+	 * @param id the id of the unit
+	 * @return the unit, or null if no unit had the id */
+	public Unit getUnit(int id)
+	{
+		return units[id];
+	}
+
+	/** Gets the cell a unit is on
+	 *
+	 * @param id the id of the unit
+	 * @return the cell index, or -1 if the unit is not on the board */
+	public int getUnitCell(int id)
+	{
+		return positions[id];
+	}
+
+	/** Gets the x coordinate of a unit
+	 *
+	 * @param id the id of the unit
+	 * @return the x coordinate */
+	public int getUnitX(int id)
+	{
+		return positions[id] % width;
+	}
+
+	/** Gets the y coordinate of a unit
+	 *
+	 * @param id the id of the unit
+	 * @return the y coordinate */
+	public int getUnitY(int id)
+	{
+		return positions[id] / width;
+	}
+
+	/** Gets the index of the player that owns a unit
+	 *
+	 * @param id the id of the unit
+	 * @return the index of the owner */
+	public int getOwner(int id)
+	{
+		return owners[id];
+	}
+
+	/** Gets the number of players that owned units on the board
+	 *
+	 * @return the number of players */
+	public int getNumPlayers()
+	{
+		return players.length;
+	}
+
+	/** Gets one of the players that owned units on the board
+	 *
+	 * @param owner the index of the player
+	 * @return the player */
+	public Player getPlayer(int owner)
+	{
+		return players[owner];
+	}
+
+	/** Gets the health of a unit
+	 *
+	 * @param id the id of the unit
+	 * @return the current health */
+	public int getHealth(int id)
+	{
+		return health[id];
+	}
+
+	/** Gets the attack damage of a unit
+	 *
+	 * @param id the id of the unit
+	 * @return the current attack damage */
+	public int getAttack(int id)
+	{
+		return attack[id];
+	}
+
+	/** Gets the movement range of a unit
+	 *
+	 * @param id the id of the unit
+	 * @return the current movement range */
+	public int getMovement(int id)
+	{
+		return movement[id];
+	}
+
+	/** Gets the basic attack range stat of a unit
+	 *
+	 * @param id the id of the unit
+	 * @return the current attack range */
+	public int getRange(int id)
+	{
+		return range[id];
+	}
+
+	/** Gets the id of the unit at a cell
+	 *
+	 * @param cell the cell index
+	 * @return the id of the unit, or 0 if there is none */
+	private int getOccupant(int cell)
+	{
+		int[] page = occupants[cell / PAGE_SIZE];
+		return page == null ? 0 : page[cell % PAGE_SIZE];
+	}
+
+	/** Sets the id of the unit at a cell, copying the page holding it so that
+	 * snapshots sharing the page are left unchanged. Only called on a new
+	 * snapshot whose page array has already been copied
+	 *
+	 * @param cell the cell index
+	 * @param id the id of the unit, or 0 to empty the cell */
+	private void setOccupant(int cell, int id)
+	{
+		int[] page = occupants[cell / PAGE_SIZE];
+		if (page == null)
+		{
+			if (id == 0)
+				return;
+			page = new int[PAGE_SIZE];
+		} else
+			page = page.clone();
+		page[cell % PAGE_SIZE] = id;
+		occupants[cell / PAGE_SIZE] = page;
+	}
+
+	/** Gets the page of an array holding a cell, creating it if necessary
+	 *
+	 * @param pages the pages of the array
+	 * @param cell the cell index
+	 * @return the page */
+	private static int[] getPage(int[][] pages, int cell)
+	{
+		int[] page = pages[cell / PAGE_SIZE];
+		if (page == null)
+		{
+			page = new int[PAGE_SIZE];
+			pages[cell / PAGE_SIZE] = page;
+		}
+		return page;
+	}
+
+}
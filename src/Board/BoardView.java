@@ -0,0 +1,42 @@
+package Board;
+
+/** The parts of a board that movement depends on, which can be read either
+ * from a live board or from a snapshot of one taken at an earlier time.
+ *
+ * @author Shiranka Miskin
+ * @version January 2013 */
+public abstract class BoardView
+{
+
+	/** Gets the width of the grid
+	 * 
+	 * @return the width of the grid */
+	public abstract int getGridWidth();
+
+	/** Gets the height of the grid
+	 * 
+	 * @return the height of the grid */
+	public abstract int getGridHeight();
+
+	/** Gets the cost of moving onto a tile
+	 * 
+	 * @param x the x coordinate of the tile
+	 * @param y the y coordinate of the tile
+	 * @return the cost of the tile */
+	public abstract int getCost(int x, int y);
+
+	/** Returns if a location can be traversed by a unit
+	 * 
+	 * @param x the x coordinate to check
+	 * @param y the y coordinate to check
+	 * @return true if a unit can walk over the point, false if they cannot */
+	public abstract boolean isWalkable(int x, int y);
+
+	/** Returns if a point is within the board bounds and traversable
+	 * 
+	 * @param x the x coordinate of the point
+	 * @param y the y coordinate of the point
+	 * @return true if the location is valid, false if not */
+	public abstract boolean isValid(int x, int y);
+
+}
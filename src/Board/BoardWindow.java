@@ -0,0 +1,114 @@
+package Board;
+
+/** A copy of the costs and walkability of a rectangle of a board, taken so
+ * that movement within the rectangle can be worked out on another thread
+ * while the board keeps changing. Copying only the part of the board a unit
+ * can reach keeps the copy small however big the board is. Everything outside
+ * the rectangle is treated as a wall.
+ *
+ * @author Shiranka Miskin
+ * @version January 2013 */
+public class BoardWindow extends BoardView
+{
+
+	private final int boardWidth;
+	private final int boardHeight;
+	private final int windowX;
+	private final int windowY;
+	private final int windowWidth;
+	private final int windowHeight;
+	private final short[] costs;
+	private final boolean[] walkable;
+
+	/** Copies the part of a board a unit can reach, which is every location
+	 * within its movement range of it, as every step costs at least 1
+	 *
+	 * @param board the board to copy
+	 * @param originX the x coordinate of the unit
+	 * @param originY the y coordinate of the unit
+	 * @param range the movement range of the unit */
+	public BoardWindow(Board board, int originX, int originY, int range)
+	{
+		boardWidth = board.getGridWidth();
+		boardHeight = board.getGridHeight();
+		int radius = Math.max(0, range - 1);
+		windowX = Math.max(0, originX - radius);
+		windowY = Math.max(0, originY - radius);
+		windowWidth = Math.min(boardWidth - 1, originX + radius) - windowX + 1;
+		windowHeight = Math.min(boardHeight - 1, originY + radius) - windowY
+				+ 1;
+
+		costs = new short[windowWidth * windowHeight];
+		walkable = new boolean[costs.length];
+		for (int y = 0; y < windowHeight; y++)
+			for (int x = 0; x < windowWidth; x++)
+			{
+				int index = y * windowWidth + x;
+				costs[index] = (short) board.getCost(windowX + x, windowY + y);
+				walkable[index] = board.isWalkable(windowX + x, windowY + y);
+			}
+	}
+
+	/** Gets the width of the whole board
+	 *
+	 * @return the width of the grid */
+	public int getGridWidth()
+	{
+		return boardWidth;
+	}
+
+	/** Gets the height of the whole board
+	 *
+	 * @return the height of the grid */
+	public int getGridHeight()
+	{
+		return boardHeight;
+	}
+
+	/** Gets the cost of moving onto a tile
+	 *
+	 * @param x the x coordinate of the tile
+	 * @param y the y coordinate of the tile
+	 * @return the cost of the tile, or the maximum cost outside the window */
+	public int getCost(int x, int y)
+	{
+		if (!contains(x, y))
+			return Board.MAX_TILE_COST;
+		return costs[(y - windowY) * windowWidth + (x - windowX)];
+	}
+
+	/** Returns if a location can be traversed by a unit
+	 *
+	 * @param x the x coordinate to check
+	 * @param y the y coordinate to check
+	 * @return true if a unit can walk over the point, false if they cannot or
+	 *         it is outside the window */
+	public boolean isWalkable(int x, int y)
+	{
+		return contains(x, y)
+				&& walkable[(y - windowY) * windowWidth + (x - windowX)];
+	}
+
+	/** Returns if a point is within the window and traversable
+	 *
+	 * @param x the x coordinate of the point
+	 * @param y the y coordinate of the point
+	 * @return true if the location is valid, false if not */
+	public boolean isValid(int x, int y)
+	{
+		return contains(x, y)
+				&& costs[(y - windowY) * windowWidth + (x - windowX)] < Board.MAX_TILE_COST;
+	}
+
+	/** Determines if a location is inside the window
+	 *
+	 * @param x the x coordinate of the location
+	 * @param y the y coordinate of the location
+	 * @return true if the location was copied, false if not */
+	private boolean contains(int x, int y)
+	{
+		return x >= windowX && y >= windowY && x < windowX + windowWidth
+				&& y < windowY + windowHeight;
+	}
+
+}
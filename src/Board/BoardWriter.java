@@ -0,0 +1,202 @@
+package Board;
+
+import java.io.File;
+import java.io.IOException;
+
+/** Saves boards on a background thread so that saving never holds up the
+ * screen. Each save takes a copy of the board straight away, so the board can
+ * keep being edited while it is written. If more saves are asked for while one
+ * is being written, only the latest of them is written once it finishes.
+ *
+ * @author Shiranka Miskin
+ * @version January 2013 */
+public class BoardWriter
+{
+
+	/** The progress of the saves that have been asked for */
+	public enum Status
+	{
+		IDLE, SAVING, SAVED, FAILED
+	}
+
+	private Thread thread;
+	private Status status;
+	private IOException error;
+
+	// The next save to write, replaced by any newer save
+	private BoardFile pendingContents;
+	private File pendingFile;
+	private boolean writing;
+
+	private int savesRequested;
+	private int savesWritten;
+
+	/** Creates a board writer, which starts its thread on the first save */
+	public BoardWriter()
+	{
+		status = Status.IDLE;
+	}
+
+	/** Saves a board in the background
+	 *
+	 * @param board the board to save
+	 * @param textFile the .txt file to save to, which also has its binary
+	 *            copy saved */
+	public void save(Board board, File textFile)
+	{
+		BoardFile contents = BoardFile.snapshot(board);
+		synchronized (this)
+		{
+			// A save that has not been started yet is replaced by this one
+			if (pendingContents != null)
+				pendingContents.getTerrain().close();
+			pendingContents = contents;
+			pendingFile = textFile;
+			status = Status.SAVING;
+			savesRequested++;
+			if (thread == null)
+				startThread();
+			notifyAll();
+		}
+	}
+
+	/** Gets the progress of the saves
+	 *
+	 * @return SAVING while a save is waiting or being written, otherwise
+	 *         whether the last one succeeded */
+	public synchronized Status getStatus()
+	{
+		return status;
+	}
+
+	/** Gets the reason the last save failed
+	 *
+	 * @return the error, or null if the last save did not fail */
+	public synchronized IOException getError()
+	{
+		return error;
+	}
+
+	/** Gets the number of saves that have been asked for
+	 *
+	 * @return the number of saves */
+	public synchronized int getSavesRequested()
+	{
+		return savesRequested;
+	}
+
+	/** Gets the number of saves that were actually written, which is lower
+	 * than the number asked for if saves were combined
+	 *
+	 * @return the number of saves written */
+	public synchronized int getSavesWritten()
+	{
+		return savesWritten;
+	}
+
+	/** Waits until every save that has been asked for has been written
+	 *
+	 * @throws InterruptedException */
+	public synchronized void waitForSaves() throws InterruptedException
+	{
+		while (pendingContents != null || writing)
+			wait();
+	}
+
+	/** Starts the thread that writes the saves */
+	private void startThread()
+	{
+		thread = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				writeSaves();
+			}
+		}, "Board writer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/** Writes saves as they are asked for, for as long as the game runs. If
+	 * the thread stops for any reason, the next save starts a new one
+	 * instead of waiting on it forever */
+	private void writeSaves()
+	{
+		try
+		{
+			writeUntilStopped();
+		} finally
+		{
+			synchronized (this)
+			{
+				thread = null;
+				writing = false;
+				if (pendingContents != null)
+					startThread();
+				else if (status == Status.SAVING)
+					status = Status.FAILED;
+				notifyAll();
+			}
+		}
+	}
+
+	/** Writes saves as they are asked for until the thread is interrupted */
+	private void writeUntilStopped()
+	{
+		while (true)
+		{
+			BoardFile contents;
+			File file;
+			synchronized (this)
+			{
+				while (pendingContents == null)
+				{
+					try
+					{
+						wait();
+					} catch (InterruptedException e)
+					{
+						return;
+					}
+				}
+				contents = pendingContents;
+				file = pendingFile;
+				pendingContents = null;
+				writing = true;
+			}
+
+			IOException failure = null;
+			try
+			{
+				contents.save(file);
+			} catch (IOException e)
+			{
+				failure = e;
+				e.printStackTrace();
+			} catch (RuntimeException e)
+			{
+				// A board that cannot be written, such as one with a tile
+				// type that has no name, fails the save rather than the
+				// thread, so later saves are still written
+				failure = new IOException("Unable to save " + file, e);
+				e.printStackTrace();
+			} finally
+			{
+				contents.getTerrain().close();
+			}
+
+			synchronized (this)
+			{
+				writing = false;
+				savesWritten++;
+				error = failure;
+				// A newer save will replace this one, so the status only
+				// changes once there is nothing left to write
+				if (pendingContents == null)
+					status = failure == null ? Status.SAVED : Status.FAILED;
+				notifyAll();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,145 @@
+package Board;
+
+import java.util.Arrays;
+
+/** A binary heap of cells ordered by a priority, used as the open list of path
+ * searches. Ties in priority go to the entry with the higher tie breaker. The
+ * heap does not support changing the priority of an entry, so searches add
+ * the cell again and skip the outdated entries when they are removed.
+ *
+ * @author Shiranka Miskin
+ * @version January 2013 */
+public class CellHeap
+{
+
+	private int[] cells;
+	private int[] priorities;
+	private int[] tieBreakers;
+	private int size;
+
+	/** Creates an empty heap */
+	public CellHeap()
+	{
+		cells = new int[64];
+		priorities = new int[64];
+		tieBreakers = new int[64];
+	}
+
+	/** Adds a cell to the heap
+	 *
+	 * @param cell the cell index
+	 * @param priority the priority of the cell, lower coming first
+	 * @param tieBreaker used to order cells of the same priority, higher
+	 *            coming first */
+	public void push(int cell, int priority, int tieBreaker)
+	{
+		if (size == cells.length)
+		{
+			cells = Arrays.copyOf(cells, size * 2);
+			priorities = Arrays.copyOf(priorities, size * 2);
+			tieBreakers = Arrays.copyOf(tieBreakers, size * 2);
+		}
+		int i = size++;
+		cells[i] = cell;
+		priorities[i] = priority;
+		tieBreakers[i] = tieBreaker;
+
+		// Moves the entry up until its parent comes before it
+		while (i > 0 && before(i, (i - 1) / 2))
+		{
+			swap(i, (i - 1) / 2);
+			i = (i - 1) / 2;
+		}
+	}
+
+	/** Removes the first entry of the heap */
+	public void pop()
+	{
+		size--;
+		swap(0, size);
+
+		// Moves the new first entry down until both children come after it
+		int i = 0;
+		while (true)
+		{
+			int first = i;
+			int left = i * 2 + 1;
+			int right = left + 1;
+			if (left < size && before(left, first))
+				first = left;
+			if (right < size && before(right, first))
+				first = right;
+			if (first == i)
+				return;
+			swap(i, first);
+			i = first;
+		}
+	}
+
+	/** Gets the cell of the first entry
+	 *
+	 * @return the cell that comes first */
+	public int peekCell()
+	{
+		return cells[0];
+	}
+
+	/** Gets the priority of the first entry
+	 *
+	 * @return the lowest priority in the heap */
+	public int peekPriority()
+	{
+		return priorities[0];
+	}
+
+	/** Gets the tie breaker of the first entry
+	 *
+	 * @return the tie breaker of the first entry */
+	public int peekTieBreaker()
+	{
+		return tieBreakers[0];
+	}
+
+	/** Determines if the heap is empty
+	 *
+	 * @return true if there are no entries, false if not */
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	/** Removes every entry from the heap */
+	public void clear()
+	{
+		size = 0;
+	}
+
+	/** Determines if one entry should come before another
+	 *
+	 * @param a the index of the first entry
+	 * @param b the index of the second entry
+	 * @return true if the first entry comes first, false if not */
+	private boolean before(int a, int b)
+	{
+		return priorities[a] < priorities[b]
+				|| (priorities[a] == priorities[b] && tieBreakers[a] > tieBreakers[b]);
+	}
+
+	/** Swaps two entries of the heap
+	 *
+	 * @param a the index of the first entry
+	 * @param b the index of the second entry */
+	private void swap(int a, int b)
+	{
+		int temp = cells[a];
+		cells[a] = cells[b];
+		cells[b] = temp;
+		temp = priorities[a];
+		priorities[a] = priorities[b];
+		priorities[b] = temp;
+		temp = tieBreakers[a];
+		tieBreakers[a] = tieBreakers[b];
+		tieBreakers[b] = temp;
+	}
+
+}
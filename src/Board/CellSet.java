@@ -0,0 +1,104 @@
+package Board;
+
+import java.util.Arrays;
+
+/** A set of cell indices (y * width + x) on a board. Membership is stored in a
+ * bit set that is split into pages which are only created once a cell inside
+ * of them is added, and the cells are also kept in a list so they can be
+ * iterated over and cleared without looking at the rest of the board.
+ *
+ * @author Shiranka Miskin
+ * @version January 2013 */
+public class CellSet
+{
+
+	private static final int PAGE_BITS = 12;
+	private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+	private long[][] pages;
+	private int[] cells;
+	private int size;
+
+	/** Creates an empty set able to hold the cells of a board
+	 *
+	 * @param numCells the number of cells on the board */
+	public CellSet(int numCells)
+	{
+		pages = new long[(numCells + PAGE_SIZE - 1) / PAGE_SIZE][];
+		cells = new int[16];
+	}
+
+	/** Adds a cell to the set
+	 *
+	 * @param cell the cell index to add
+	 * @return true if the cell was added, false if it was already in the set */
+	public boolean add(int cell)
+	{
+		long[] page = pages[cell >>> PAGE_BITS];
+		if (page == null)
+		{
+			page = new long[PAGE_SIZE / 64];
+			pages[cell >>> PAGE_BITS] = page;
+		}
+		int bit = cell & (PAGE_SIZE - 1);
+		long mask = 1L << bit;
+		if ((page[bit >>> 6] & mask) != 0)
+			return false;
+		page[bit >>> 6] |= mask;
+
+		if (size == cells.length)
+			cells = Arrays.copyOf(cells, size * 2);
+		cells[size++] = cell;
+		return true;
+	}
+
+	/** Determines if a cell is in the set
+	 *
+	 * @param cell the cell index to check
+	 * @return true if the cell is in the set, false if not */
+	public boolean contains(int cell)
+	{
+		if (cell < 0 || (cell >>> PAGE_BITS) >= pages.length)
+			return false;
+		long[] page = pages[cell >>> PAGE_BITS];
+		int bit = cell & (PAGE_SIZE - 1);
+		return page != null && (page[bit >>> 6] & (1L << bit)) != 0;
+	}
+
+	/** Removes every cell from the set */
+	public void clear()
+	{
+		for (int i = 0; i < size; i++)
+		{
+			int bit = cells[i] & (PAGE_SIZE - 1);
+			pages[cells[i] >>> PAGE_BITS][bit >>> 6] = 0;
+		}
+		size = 0;
+	}
+
+	/** Gets the number of cells in the set
+	 *
+	 * @return the number of cells */
+	public int size()
+	{
+		return size;
+	}
+
+	/** Determines if the set has no cells
+	 *
+	 * @return true if the set is empty, false if not */
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	/** Gets a cell in the set, in the order they were added
+	 *
+	 * @param i the index of the cell, from 0 to size() - 1
+	 * @return the cell index */
+	public int get(int i)
+	{
+		return cells[i];
+	}
+
+}
@@ -0,0 +1,90 @@
+package Board;
+
+import java.awt.Rectangle;
+
+/** Keeps count of the changes made to a layer of a board (such as its terrain
+ * or the positions of its units) along with the cells that changed, so that
+ * anything built from the board can tell whether it is out of date and which
+ * part of it needs to be rebuilt. Only the most recent changes are remembered;
+ * asking about older changes treats the entire board as changed.
+ *
+ * @author Shiranka Miskin
+ * @version January 2013 */
+public class ChangeLog
+{
+
+	private static final int CAPACITY = 256;
+	// Marks a change that affected the entire board
+	private static final int ALL_CELLS = -1;
+
+	private int width;
+	private int height;
+	private int version;
+	// The cell changed by each of the most recent versions
+	private int[] changedCells;
+
+	/** Creates a change log for a board
+	 *
+	 * @param width the width of the board
+	 * @param height the height of the board */
+	public ChangeLog(int width, int height)
+	{
+		this.width = width;
+		this.height = height;
+		changedCells = new int[CAPACITY];
+	}
+
+	/** Records a change to a single cell
+	 *
+	 * @param cell the index of the cell that changed */
+	public void record(int cell)
+	{
+		version++;
+		changedCells[version % CAPACITY] = cell;
+	}
+
+	/** Records a change that affected the entire board */
+	public void recordAll()
+	{
+		record(ALL_CELLS);
+	}
+
+	/** Gets the current version, which increases with every change
+	 *
+	 * @return the number of changes made so far */
+	public int getVersion()
+	{
+		return version;
+	}
+
+	/** Gets the smallest rectangle of cells holding every change made since a
+	 * version
+	 *
+	 * @param sinceVersion the version that was last seen
+	 * @return the changed region, the whole board if the changes are no longer
+	 *         remembered, or null if nothing has changed */
+	public Rectangle getDirtyRegion(int sinceVersion)
+	{
+		if (sinceVersion >= version)
+			return null;
+		if (version - sinceVersion > CAPACITY)
+			return new Rectangle(0, 0, width, height);
+
+		int minX = width;
+		int minY = height;
+		int maxX = -1;
+		int maxY = -1;
+		for (int v = sinceVersion + 1; v <= version; v++)
+		{
+			int cell = changedCells[v % CAPACITY];
+			if (cell == ALL_CELLS)
+				return new Rectangle(0, 0, width, height);
+			minX = Math.min(minX, cell % width);
+			minY = Math.min(minY, cell / width);
+			maxX = Math.max(maxX, cell % width);
+			maxY = Math.max(maxY, cell / width);
+		}
+		return new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
+	}
+
+}
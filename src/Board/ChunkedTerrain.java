@@ -0,0 +1,644 @@
+package Board;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Terrain for huge boards, split into square chunks of which only the most
+ * recently used are kept in memory. Chunks that are pushed out of memory are
+ * written to a page file and read back in the next time they are used, and
+ * chunks that have never been written take up no space at all.
+ *
+ * Terrain loaded from a binary board file reads each chunk straight from the
+ * file the first time it is used, so only the chunks that are looked at are
+ * ever read. The board file is never written to, and a chunk only goes to the
+ * page file once it has been changed.
+ *
+ * Copies of the terrain share its chunks, its page file and its board file
+ * rather than copying every cell, so a copy can be taken each time the board
+ * is saved. A shared chunk is only copied the first time either terrain
+ * changes it, and a terrain never writes over the part of the page file
+ * that a copy may still read. The files are let go of once the terrain and
+ * every copy of it have been closed.
+ *
+ * @author Shiranka Miskin
+ * @version January 2013 */
+public class ChunkedTerrain extends Terrain
+{
+
+	public static final int CHUNK_SIZE = 64;
+	public static final int DEFAULT_RESIDENT_CHUNKS = 256;
+	private static final int CHUNK_CELLS = CHUNK_SIZE * CHUNK_SIZE;
+	// A byte for the type and two for the cost of each cell
+	private static final int CHUNK_BYTES = CHUNK_CELLS * 3;
+
+	private int chunksWide;
+	private int chunksHigh;
+	private int maxResident;
+	private LinkedHashMap<Integer, Chunk> resident;
+	// Chunks pushed out of memory whose arrays can be reused
+	private ArrayList<Chunk> spareChunks;
+
+	// The chunk used last, as neighboring cells are usually used together
+	private Chunk lastChunk;
+
+	private PageFile pages;
+	// Where each chunk was written in the page file, or -1 if it has not been
+	private long[] pagePositions;
+	// True where no copy of the terrain can be reading the chunk's place in
+	// the page file, so it can be written over
+	private boolean[] pageOwned;
+	private ByteBuffer pageBuffer;
+
+	// The board file the terrain was loaded from, or null if there is none
+	private Source source;
+	private ByteBuffer sourceBuffer;
+
+	private int chunksLoaded;
+	private int chunksWritten;
+	private boolean closed;
+
+	/** A square section of the terrain */
+	private static class Chunk
+	{
+		private int index;
+		private byte[] types = new byte[CHUNK_CELLS];
+		private short[] costs = new short[CHUNK_CELLS];
+		// True if the chunk has changed since it was last written
+		private boolean dirty;
+		// True if a copy of the terrain may be using the same arrays, so
+		// they have to be copied before they are changed
+		private boolean shared;
+
+		/** Creates an empty chunk */
+		private Chunk()
+		{
+			this(new byte[CHUNK_CELLS], new short[CHUNK_CELLS]);
+		}
+
+		/** Creates a chunk holding existing cells
+		 *
+		 * @param types the tile type ids of the cells
+		 * @param costs the costs of the cells */
+		private Chunk(byte[] types, short[] costs)
+		{
+			this.types = types;
+			this.costs = costs;
+		}
+	}
+
+	/** The board file a terrain was loaded from, holding a byte of type for
+	 * every cell followed by a short of cost for every cell. It is shared by
+	 * the terrain and all of its copies, which may be used on different
+	 * threads
+	 *
+	 * @author Shiranka Miskin
+	 * @version January 2013 */
+	private static class Source
+	{
+		private File file;
+		private FileChannel channel;
+		// True once the terrain has been copied out of the board file into a
+		// file of its own, which is deleted when it is no longer used
+		private boolean detached;
+		private int users = 1;
+		// Where the types of the cells start in the file
+		private long start;
+		// Converts the file's tile type ids to the game's, or null if they
+		// match
+		private byte[] typeIds;
+		// The number of bytes of terrain in the file
+		private long length;
+
+		/** Reads part of the terrain from the file
+		 *
+		 * @param buffer the buffer to fill up to its limit
+		 * @param offset how far after the start of the types to read from
+		 * @throws IOException if the file cannot be read */
+		private synchronized void read(ByteBuffer buffer, long offset)
+				throws IOException
+		{
+			readFully(channel, buffer, start + offset);
+		}
+
+		/** Copies the terrain out of the board file into a file of its own
+		 * and closes the board file, unless it has been done already
+		 *
+		 * @throws IOException if the terrain cannot be copied */
+		private synchronized void detach() throws IOException
+		{
+			if (detached)
+				return;
+			File copy = File.createTempFile("terrain", ".cells");
+			copy.deleteOnExit();
+			FileChannel copyChannel = new RandomAccessFile(copy, "rw")
+					.getChannel();
+			try
+			{
+				long copied = 0;
+				while (copied < length)
+					copied += channel.transferTo(start + copied, length
+							- copied, copyChannel);
+			} catch (IOException e)
+			{
+				copyChannel.close();
+				copy.delete();
+				throw e;
+			}
+			channel.close();
+			channel = copyChannel;
+			file = copy;
+			start = 0;
+			detached = true;
+		}
+
+		/** Adds another terrain using the file */
+		private synchronized void addUser()
+		{
+			users++;
+		}
+
+		/** Stops a terrain using the file, closing it once no terrain uses it */
+		private synchronized void release()
+		{
+			if (--users > 0)
+				return;
+			try
+			{
+				channel.close();
+			} catch (IOException e)
+			{
+				// The file is not read again either way
+			}
+			if (detached)
+				file.delete();
+		}
+	}
+
+	/** The file that chunks are written to once they leave memory. It is
+	 * shared by a terrain and all of its copies, each of which keeps track of
+	 * where its own chunks are, and new places are added to the end of the
+	 * file as they are needed
+	 *
+	 * @author Shiranka Miskin
+	 * @version January 2013 */
+	private static class PageFile
+	{
+		private File file;
+		private RandomAccessFile pages;
+		private long length;
+		private int users = 1;
+
+		/** Creates an empty page file
+		 *
+		 * @throws IOException if the file cannot be created */
+		private PageFile() throws IOException
+		{
+			file = File.createTempFile("terrain", ".chunks");
+			file.deleteOnExit();
+			pages = new RandomAccessFile(file, "rw");
+		}
+
+		/** Makes room for another chunk at the end of the file
+		 *
+		 * @return the position of the new place */
+		private synchronized long add()
+		{
+			length += CHUNK_BYTES;
+			return length - CHUNK_BYTES;
+		}
+
+		/** Reads a chunk from the file
+		 *
+		 * @param buffer the buffer to fill
+		 * @param position where the chunk is in the file
+		 * @throws IOException if the file cannot be read */
+		private synchronized void read(ByteBuffer buffer, long position)
+				throws IOException
+		{
+			readFully(pages.getChannel(), buffer, position);
+		}
+
+		/** Writes a chunk to the file
+		 *
+		 * @param buffer the chunk to write
+		 * @param position where the chunk goes in the file
+		 * @throws IOException if the file cannot be written */
+		private synchronized void write(ByteBuffer buffer, long position)
+				throws IOException
+		{
+			while (buffer.hasRemaining())
+				pages.getChannel().write(buffer, position + buffer.position());
+		}
+
+		/** Adds another terrain using the file */
+		private synchronized void addUser()
+		{
+			users++;
+		}
+
+		/** Stops a terrain using the file, deleting it once no terrain uses
+		 * it */
+		private synchronized void release()
+		{
+			if (--users > 0)
+				return;
+			try
+			{
+				pages.close();
+			} catch (IOException e)
+			{
+				// The file is deleted either way
+			}
+			file.delete();
+		}
+	}
+
+	/** Creates terrain for a board
+	 *
+	 * @param width the width of the board
+	 * @param height the height of the board */
+	public ChunkedTerrain(int width, int height)
+	{
+		this(width, height, DEFAULT_RESIDENT_CHUNKS);
+	}
+
+	/** Creates terrain for a board, keeping a certain number of chunks in
+	 * memory. At least a full row of chunks is always kept, since boards are
+	 * filled in one row of cells at a time
+	 *
+	 * @param width the width of the board
+	 * @param height the height of the board
+	 * @param maxResident the most chunks to keep in memory */
+	public ChunkedTerrain(int width, int height, int maxResident)
+	{
+		super(width, height);
+		chunksWide = (width + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		chunksHigh = (height + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		this.maxResident = Math.max(maxResident, chunksWide + 1);
+		pagePositions = new long[chunksWide * chunksHigh];
+		Arrays.fill(pagePositions, -1);
+		pageOwned = new boolean[pagePositions.length];
+		spareChunks = new ArrayList<Chunk>();
+		pageBuffer = ByteBuffer.allocate(CHUNK_BYTES);
+
+		// Ordered by access so the least recently used chunk is removed first
+		resident = new LinkedHashMap<Integer, Chunk>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<Integer, Chunk> eldest)
+			{
+				if (size() <= ChunkedTerrain.this.maxResident)
+					return false;
+				evict(eldest.getValue());
+				return true;
+			}
+		};
+	}
+
+	/** Creates terrain whose chunks are read from a board file as they are
+	 * needed. The channel is kept open until the terrain and all of its copies
+	 * are closed
+	 *
+	 * @param width the width of the board
+	 * @param height the height of the board
+	 * @param file the board file
+	 * @param source the channel the board file is read through
+	 * @param typesOffset where the types of the cells start in the file
+	 * @param typeIds converts the file's tile type ids to the game's, or null
+	 *            if they are the same */
+	ChunkedTerrain(int width, int height, File file, FileChannel source,
+			long typesOffset, byte[] typeIds)
+	{
+		this(width, height);
+		this.source = new Source();
+		this.source.file = file;
+		this.source.channel = source;
+		this.source.start = typesOffset;
+		this.source.typeIds = typeIds;
+		this.source.length = (long) width * height * 3;
+		sourceBuffer = ByteBuffer.allocate(CHUNK_SIZE * 2);
+	}
+
+	/** Gets the id of the type of tile at a cell
+	 *
+	 * @param cell the cell index
+	 * @return the tile type id */
+	public int getType(int cell)
+	{
+		return getChunk(cell).types[getLocalIndex(cell)] & 0xFF;
+	}
+
+	/** Sets the type of tile at a cell
+	 *
+	 * @param cell the cell index
+	 * @param type the tile type id */
+	public void setType(int cell, int type)
+	{
+		getChangingChunk(cell).types[getLocalIndex(cell)] = (byte) type;
+	}
+
+	/** Gets the cost of moving onto a cell
+	 *
+	 * @param cell the cell index
+	 * @return the cost of the tile */
+	public int getCost(int cell)
+	{
+		return getChunk(cell).costs[getLocalIndex(cell)];
+	}
+
+	/** Sets the cost of moving onto a cell
+	 *
+	 * @param cell the cell index
+	 * @param cost the new cost of the tile */
+	public void setCost(int cell, int cost)
+	{
+		getChangingChunk(cell).costs[getLocalIndex(cell)] = toStoredCost(cost);
+	}
+
+	/** Creates a copy of the terrain that can be changed separately. Only the
+	 * chunks in memory and where each chunk is kept are copied, while the
+	 * cells themselves are shared until one of the terrains changes them
+	 *
+	 * @return the copy */
+	public Terrain copy()
+	{
+		ChunkedTerrain copy = new ChunkedTerrain(width, height, maxResident);
+		copy.source = source;
+		if (source != null)
+		{
+			source.addUser();
+			copy.sourceBuffer = ByteBuffer.allocate(CHUNK_SIZE * 2);
+		}
+
+		// Neither terrain may write over the other's chunks in the page file
+		copy.pages = pages;
+		if (pages != null)
+			pages.addUser();
+		copy.pagePositions = pagePositions.clone();
+		Arrays.fill(pageOwned, false);
+
+		for (Chunk chunk : resident.values())
+		{
+			Chunk shared = new Chunk(chunk.types, chunk.costs);
+			shared.index = chunk.index;
+			shared.dirty = chunk.dirty;
+			shared.shared = true;
+			chunk.shared = true;
+			copy.resident.put(shared.index, shared);
+		}
+		return copy;
+	}
+
+	/** Makes sure the terrain no longer reads from a file, so that the file
+	 * can be written over. If it is the board file the terrain was loaded
+	 * from, the cells still read from it are copied to a file of their own,
+	 * for this terrain and all of its copies
+	 *
+	 * @param file the file that is about to be written over */
+	public void detach(File file)
+	{
+		if (source == null
+				|| !source.file.getAbsoluteFile().equals(file.getAbsoluteFile()))
+			return;
+		try
+		{
+			source.detach();
+		} catch (IOException e)
+		{
+			throw new IllegalStateException("Unable to copy the terrain out of "
+					+ file, e);
+		}
+	}
+
+	/** Lets go of the board file and page file once no copy of the terrain
+	 * uses them either. The terrain cannot be used afterwards */
+	public void close()
+	{
+		if (closed)
+			return;
+		closed = true;
+		if (source != null)
+			source.release();
+		if (pages != null)
+			pages.release();
+		source = null;
+		pages = null;
+		resident.clear();
+		spareChunks.clear();
+		lastChunk = null;
+	}
+
+	/** Gets the number of chunks currently in memory
+	 *
+	 * @return the number of resident chunks */
+	public int getResidentChunks()
+	{
+		return resident.size();
+	}
+
+	/** Gets the number of times a chunk has been read from the page file or
+	 * the board file
+	 *
+	 * @return the number of chunks loaded */
+	public int getChunksLoaded()
+	{
+		return chunksLoaded;
+	}
+
+	/** Gets the number of times a chunk has been written to the page file
+	 *
+	 * @return the number of chunks written */
+	public int getChunksWritten()
+	{
+		return chunksWritten;
+	}
+
+	/** Gets the chunk holding a cell, reading it in if it is not in memory
+	 *
+	 * @param cell the cell index
+	 * @return the chunk containing the cell */
+	private Chunk getChunk(int cell)
+	{
+		int index = (cell / width / CHUNK_SIZE) * chunksWide
+				+ (cell % width / CHUNK_SIZE);
+		if (lastChunk != null && lastChunk.index == index)
+			return lastChunk;
+
+		Chunk chunk = resident.get(index);
+		if (chunk == null)
+		{
+			if (spareChunks.isEmpty())
+				chunk = new Chunk();
+			else
+				chunk = spareChunks.remove(spareChunks.size() - 1);
+			chunk.index = index;
+			chunk.dirty = false;
+			load(chunk);
+			resident.put(index, chunk);
+		}
+		lastChunk = chunk;
+		return chunk;
+	}
+
+	/** Gets the chunk holding a cell so that it can be changed, copying its
+	 * cells first if they are shared with a copy of the terrain
+	 *
+	 * @param cell the cell index
+	 * @return the chunk containing the cell, marked as changed */
+	private Chunk getChangingChunk(int cell)
+	{
+		Chunk chunk = getChunk(cell);
+		if (chunk.shared)
+		{
+			chunk.types = chunk.types.clone();
+			chunk.costs = chunk.costs.clone();
+			chunk.shared = false;
+		}
+		chunk.dirty = true;
+		return chunk;
+	}
+
+	/** Gets the index of a cell within its chunk
+	 *
+	 * @param cell the cell index
+	 * @return the index of the cell in its chunk's arrays */
+	private int getLocalIndex(int cell)
+	{
+		return (cell / width % CHUNK_SIZE) * CHUNK_SIZE
+				+ (cell % width % CHUNK_SIZE);
+	}
+
+	/** Fills in a chunk from the page file if it has been changed, otherwise
+	 * from the board file, or with empty terrain if there is neither
+	 *
+	 * @param chunk the chunk to fill in */
+	private void load(Chunk chunk)
+	{
+		if (closed)
+			throw new IllegalStateException("The terrain has been closed");
+		if (pagePositions[chunk.index] < 0)
+		{
+			if (source != null)
+				loadFromSource(chunk);
+			else
+			{
+				Arrays.fill(chunk.types, (byte) 0);
+				Arrays.fill(chunk.costs, (short) 0);
+			}
+			return;
+		}
+		try
+		{
+			pageBuffer.clear();
+			pages.read(pageBuffer, pagePositions[chunk.index]);
+			pageBuffer.flip();
+			pageBuffer.get(chunk.types);
+			pageBuffer.asShortBuffer().get(chunk.costs);
+			chunksLoaded++;
+		} catch (IOException e)
+		{
+			throw new IllegalStateException("Unable to read terrain chunk "
+					+ chunk.index, e);
+		}
+	}
+
+	/** Fills in a chunk from the board file, one row of the chunk at a time
+	 *
+	 * @param chunk the chunk to fill in */
+	private void loadFromSource(Chunk chunk)
+	{
+		int startX = chunk.index % chunksWide * CHUNK_SIZE;
+		int startY = chunk.index / chunksWide * CHUNK_SIZE;
+		int columns = Math.min(CHUNK_SIZE, width - startX);
+		int rows = Math.min(CHUNK_SIZE, height - startY);
+		long cells = (long) width * height;
+		try
+		{
+			for (int row = 0; row < rows; row++)
+			{
+				long cell = (long) (startY + row) * width + startX;
+				int local = row * CHUNK_SIZE;
+
+				sourceBuffer.clear();
+				sourceBuffer.limit(columns);
+				source.read(sourceBuffer, cell);
+				sourceBuffer.flip();
+				sourceBuffer.get(chunk.types, local, columns);
+				if (source.typeIds != null)
+					for (int i = local; i < local + columns; i++)
+						chunk.types[i] = source.typeIds[chunk.types[i] & 0xFF];
+
+				sourceBuffer.clear();
+				sourceBuffer.limit(columns * 2);
+				source.read(sourceBuffer, cells + cell * 2);
+				sourceBuffer.flip();
+				sourceBuffer.asShortBuffer().get(chunk.costs, local, columns);
+			}
+			chunksLoaded++;
+		} catch (IOException e)
+		{
+			throw new IllegalStateException("Unable to read terrain chunk "
+					+ chunk.index + " from the board file", e);
+		}
+	}
+
+	/** Fills a buffer from a channel starting at a position in the channel
+	 *
+	 * @param channel the channel to read
+	 * @param buffer the buffer to fill up to its limit
+	 * @param position where to start reading in the channel
+	 * @throws IOException if the channel ends before the buffer is full */
+	private static void readFully(FileChannel channel, ByteBuffer buffer,
+			long position) throws IOException
+	{
+		long start = position - buffer.position();
+		while (buffer.hasRemaining())
+			if (channel.read(buffer, start + buffer.position()) < 0)
+				throw new IOException("File ended early");
+	}
+
+	/** Removes a chunk from memory, writing it to the page file if it has
+	 * changed. Its arrays are only reused if no copy of the terrain shares
+	 * them
+	 *
+	 * @param chunk the chunk to remove */
+	private void evict(Chunk chunk)
+	{
+		if (chunk == lastChunk)
+			lastChunk = null;
+		if (chunk.dirty)
+		{
+			try
+			{
+				if (pages == null)
+					pages = new PageFile();
+				if (!pageOwned[chunk.index])
+				{
+					pagePositions[chunk.index] = pages.add();
+					pageOwned[chunk.index] = true;
+				}
+				pageBuffer.clear();
+				pageBuffer.put(chunk.types);
+				pageBuffer.asShortBuffer().put(chunk.costs);
+				pageBuffer.clear();
+				pages.write(pageBuffer, pagePositions[chunk.index]);
+				chunksWritten++;
+			} catch (IOException e)
+			{
+				throw new IllegalStateException(
+						"Unable to write terrain chunk " + chunk.index, e);
+			}
+		}
+		if (!chunk.shared)
+			spareChunks.add(chunk);
+	}
+
+}
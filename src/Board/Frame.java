@@ -69,8 +69,7 @@ public class Frame
 	 * @param container the container to draw on */
 	public void draw(Graphics g, int x, int y, Container container)
 	{
-		g.drawImage(img, x, y, x + img.getWidth(), y + img.getHeight(), 0, 0,
-				img.getWidth(), img.getHeight(), container);
+		g.drawImage(img, x, y, container);
 	}
 
 	/** Draws the image at a certain location at a specific size
@@ -84,8 +83,14 @@ public class Frame
 	public void draw(Graphics g, int x, int y, int width, int height,
 			Container container)
 	{
-		g.drawImage(img, x, y, x + width, y + height, 0, 0, img.getWidth(),
-				img.getHeight(), container);
+		if (width <= 0 || height <= 0)
+			return;
+		if (width == img.getWidth() && height == img.getHeight())
+			g.drawImage(img, x, y, container);
+		else
+			// The image is only scaled the first time it is drawn at this size
+			g.drawImage(ScaledImageCache.get(img, width, height, g), x, y,
+					container);
 	}
 
 }
@@ -0,0 +1,646 @@
+package Board;
+
+import java.awt.Point;
+import java.util.Arrays;
+
+/** Finds paths across very large boards using hierarchical pathfinding
+ * (HPA*). The board is split into square clusters, and the places where a unit
+ * can cross from one cluster into the next become the nodes of a much smaller
+ * graph, with the cost of travelling between the nodes of a cluster worked out
+ * ahead of time. A path is found across that graph and then refined into
+ * individual cells one cluster at a time.
+ *
+ * Clusters are only built once a search reaches them, and a cluster is thrown
+ * away and rebuilt the next time it is needed whenever one of its tiles
+ * changes. Only the terrain is considered, so units do not block the path.
+ * The paths found are close to, but not always exactly, the cheapest path.
+ *
+ * @author Shiranka Miskin
+ * @version January 2013 */
+public class HierarchicalPathfinder
+{
+
+	public static final int CLUSTER_SIZE = 16;
+	// Each side of a cluster can have at most one node per cell
+	private static final int MAX_NODES = CLUSTER_SIZE * 4;
+	// Entrances at least this wide get a node at each end instead of one in
+	// the middle
+	private static final int WIDE_ENTRANCE = 6;
+	private static final int UNREACHED = Integer.MAX_VALUE;
+
+	private Board board;
+	private int clustersWide;
+	private int clustersHigh;
+	private Cluster[] clusters;
+
+	// A Dijkstra search limited to a single cluster
+	private int[] localCost;
+	private int[] localParent;
+	private int[] localSearched;
+	private int localSearch;
+	private CellHeap localHeap;
+	private Cluster localCluster;
+
+	// A* across the nodes of the clusters
+	private CellHeap abstractHeap;
+	private int abstractSearch;
+
+	private int nodesExpanded;
+
+	/** A square section of the board and the nodes along its edges where a
+	 * unit can cross into the neighboring clusters */
+	private static class Cluster
+	{
+		private int x;
+		private int y;
+		private int width;
+		private int height;
+
+		private int numNodes;
+		private int[] nodeCell = new int[MAX_NODES];
+		// The cell across the edge of the cluster that each node leads to
+		private int[] partnerCell = new int[MAX_NODES];
+		// The cost of travelling from each node to every other node
+		private int[] distances;
+
+		// The state of each node during a search
+		private int[] cost = new int[MAX_NODES];
+		private int[] parent = new int[MAX_NODES];
+		private int[] opened = new int[MAX_NODES];
+		private int[] closed = new int[MAX_NODES];
+		private int[] goalCost = new int[MAX_NODES];
+		private int goalSearch;
+
+		/** Determines if a location lies inside the cluster
+		 *
+		 * @param cellX the x coordinate
+		 * @param cellY the y coordinate
+		 * @return true if the location is in the cluster, false if not */
+		private boolean contains(int cellX, int cellY)
+		{
+			return cellX >= x && cellY >= y && cellX < x + width
+					&& cellY < y + height;
+		}
+
+		/** Finds the node at a cell that leads to a specific partner cell
+		 *
+		 * @param cell the cell of the node
+		 * @param partner the cell across the edge
+		 * @return the index of the node, or -1 if there is none */
+		private int findNode(int cell, int partner)
+		{
+			for (int i = 0; i < numNodes; i++)
+				if (nodeCell[i] == cell && partnerCell[i] == partner)
+					return i;
+			return -1;
+		}
+	}
+
+	/** Creates a hierarchical pathfinder for a board
+	 *
+	 * @param board the board to find paths on */
+	public HierarchicalPathfinder(Board board)
+	{
+		this.board = board;
+		clustersWide = (board.getGridWidth() + CLUSTER_SIZE - 1) / CLUSTER_SIZE;
+		clustersHigh = (board.getGridHeight() + CLUSTER_SIZE - 1)
+				/ CLUSTER_SIZE;
+		clusters = new Cluster[clustersWide * clustersHigh];
+
+		localCost = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+		localParent = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+		localSearched = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+		localHeap = new CellHeap();
+		abstractHeap = new CellHeap();
+	}
+
+	/** Tells the pathfinder that the tile at a location has changed, so that
+	 * the clusters that depend on it are rebuilt
+	 *
+	 * @param x the x coordinate of the tile
+	 * @param y the y coordinate of the tile */
+	public void tileChanged(int x, int y)
+	{
+		int clusterX = x / CLUSTER_SIZE;
+		int clusterY = y / CLUSTER_SIZE;
+		invalidate(clusterX, clusterY);
+
+		// Tiles along an edge decide where the neighboring cluster can be
+		// entered from, so the neighbor must be rebuilt as well
+		if (x % CLUSTER_SIZE == 0)
+			invalidate(clusterX - 1, clusterY);
+		if (x % CLUSTER_SIZE == CLUSTER_SIZE - 1)
+			invalidate(clusterX + 1, clusterY);
+		if (y % CLUSTER_SIZE == 0)
+			invalidate(clusterX, clusterY - 1);
+		if (y % CLUSTER_SIZE == CLUSTER_SIZE - 1)
+			invalidate(clusterX, clusterY + 1);
+	}
+
+	/** Throws away every cluster so that they are all rebuilt */
+	public void invalidateAll()
+	{
+		Arrays.fill(clusters, null);
+	}
+
+	/** Throws away a cluster so it is rebuilt the next time it is needed
+	 *
+	 * @param clusterX the x coordinate of the cluster
+	 * @param clusterY the y coordinate of the cluster */
+	private void invalidate(int clusterX, int clusterY)
+	{
+		if (clusterX >= 0 && clusterY >= 0 && clusterX < clustersWide
+				&& clusterY < clustersHigh)
+			clusters[clusterY * clustersWide + clusterX] = null;
+	}
+
+	/** Gets the number of abstract nodes expanded by the last search
+	 *
+	 * @return the number of expanded nodes */
+	public int getNodesExpanded()
+	{
+		return nodesExpanded;
+	}
+
+	/** Finds a path between two points
+	 *
+	 * @param start the location to start from
+	 * @param goal the location to travel to
+	 * @return the path, or null if the goal cannot be reached */
+	public Path findPath(Point start, Point goal)
+	{
+		return findPath(board.getCell(start), board.getCell(goal));
+	}
+
+	/** Finds a path between two cells
+	 *
+	 * @param start the cell index to start from
+	 * @param goal the cell index to travel to
+	 * @return the path, or null if the goal cannot be reached */
+	public Path findPath(int start, int goal)
+	{
+		nodesExpanded = 0;
+		int goalX = board.getCellX(goal);
+		int goalY = board.getCellY(goal);
+		if (!board.isValid(goalX, goalY))
+			return null;
+		if (start == goal)
+			return new Path(new int[] { start }, new int[] { 0 });
+
+		int startClusterIndex = getClusterIndex(start);
+		int goalClusterIndex = getClusterIndex(goal);
+		Cluster startCluster = getCluster(startClusterIndex);
+		Cluster goalCluster = getCluster(goalClusterIndex);
+
+		// If both points share a cluster, the path that stays inside the
+		// cluster might be the best one
+		int best = UNREACHED;
+		int bestNode = -1;
+		IntList directPath = null;
+		if (startCluster == goalCluster)
+		{
+			searchCluster(startCluster, start, false);
+			if (getLocalCost(goal) != UNREACHED)
+			{
+				best = getLocalCost(goal);
+				directPath = new IntList();
+				directPath.add(start);
+				appendLocalPath(directPath, goal);
+			}
+		}
+
+		// Finds how much it costs to reach the goal from each node of its
+		// cluster
+		abstractSearch++;
+		searchCluster(goalCluster, goal, true);
+		goalCluster.goalSearch = abstractSearch;
+		for (int i = 0; i < goalCluster.numNodes; i++)
+			goalCluster.goalCost[i] = getLocalCost(goalCluster.nodeCell[i]);
+
+		// Starts the search from every node the start can reach in its cluster
+		abstractHeap.clear();
+		searchCluster(startCluster, start, false);
+		for (int i = 0; i < startCluster.numNodes; i++)
+		{
+			int cost = getLocalCost(startCluster.nodeCell[i]);
+			if (cost != UNREACHED)
+				open(startClusterIndex, i, cost, -1, goalX, goalY);
+		}
+
+		while (!abstractHeap.isEmpty() && abstractHeap.peekPriority() < best)
+		{
+			int node = abstractHeap.peekCell();
+			int cost = abstractHeap.peekTieBreaker();
+			abstractHeap.pop();
+
+			int clusterIndex = node / MAX_NODES;
+			int i = node % MAX_NODES;
+			Cluster cluster = clusters[clusterIndex];
+			if (cluster == null || cluster.closed[i] == abstractSearch
+					|| cluster.cost[i] != cost)
+				continue;
+			cluster.closed[i] = abstractSearch;
+			nodesExpanded++;
+
+			// Checks if the goal can be reached from this node
+			if (cluster.goalSearch == abstractSearch
+					&& cluster.goalCost[i] != UNREACHED
+					&& cost + cluster.goalCost[i] < best)
+			{
+				best = cost + cluster.goalCost[i];
+				bestNode = node;
+			}
+
+			// Travels to the other nodes of the same cluster
+			for (int j = 0; j < cluster.numNodes; j++)
+			{
+				int distance = cluster.distances[i * cluster.numNodes + j];
+				if (j != i && distance != UNREACHED)
+					open(clusterIndex, j, cost + distance, node, goalX, goalY);
+			}
+
+			// Crosses the edge into the neighboring cluster
+			int partner = cluster.partnerCell[i];
+			int partnerClusterIndex = getClusterIndex(partner);
+			Cluster partnerCluster = getCluster(partnerClusterIndex);
+			// Getting the partner cluster may have rebuilt this cluster's
+			// neighbors, but never this cluster itself
+			int j = partnerCluster.findNode(partner, cluster.nodeCell[i]);
+			if (j != -1)
+				open(partnerClusterIndex, j, cost + getStepCost(partner), node,
+						goalX, goalY);
+		}
+
+		if (bestNode == -1)
+		{
+			if (directPath == null)
+				return null;
+			return toPath(directPath);
+		}
+		return toPath(refine(start, goal, bestNode));
+	}
+
+	/** Records a new cost for a node and adds it to the search
+	 *
+	 * @param clusterIndex the index of the node's cluster
+	 * @param i the index of the node in its cluster
+	 * @param cost the cost of reaching the node
+	 * @param from the node it was reached from, or -1 for the start
+	 * @param goalX the x coordinate of the goal
+	 * @param goalY the y coordinate of the goal */
+	private void open(int clusterIndex, int i, int cost, int from, int goalX,
+			int goalY)
+	{
+		Cluster cluster = clusters[clusterIndex];
+		if (cluster.opened[i] == abstractSearch && cluster.cost[i] <= cost)
+			return;
+		cluster.opened[i] = abstractSearch;
+		cluster.cost[i] = cost;
+		cluster.parent[i] = from;
+
+		int cell = cluster.nodeCell[i];
+		int estimate = cost + Math.abs(board.getCellX(cell) - goalX)
+				+ Math.abs(board.getCellY(cell) - goalY);
+		abstractHeap.push(clusterIndex * MAX_NODES + i, estimate, cost);
+	}
+
+	/** Turns the chain of nodes found by the search into a path of cells
+	 *
+	 * @param start the starting cell
+	 * @param goal the destination cell
+	 * @param lastNode the node the goal was reached from
+	 * @return the cells of the path */
+	private IntList refine(int start, int goal, int lastNode)
+	{
+		// Collects the nodes from the start to the end
+		IntList nodes = new IntList();
+		for (int node = lastNode; node != -1; node = clusters[node
+				/ MAX_NODES].parent[node % MAX_NODES])
+			nodes.add(node);
+
+		IntList cells = new IntList();
+		cells.add(start);
+		int current = start;
+		for (int n = nodes.size() - 1; n >= 0; n--)
+		{
+			int node = nodes.get(n);
+			Cluster cluster = clusters[node / MAX_NODES];
+			int cell = cluster.nodeCell[node % MAX_NODES];
+			if (cell == current)
+				continue;
+			if (cluster.contains(board.getCellX(current),
+					board.getCellY(current)))
+			{
+				// Travels within the cluster to the node
+				searchCluster(cluster, current, false);
+				appendLocalPath(cells, cell);
+			} else
+				// The node is just across the edge from the last one
+				cells.add(cell);
+			current = cell;
+		}
+
+		// Travels from the last node to the goal
+		if (current != goal)
+		{
+			searchCluster(clusters[getClusterIndex(goal)], current, false);
+			appendLocalPath(cells, goal);
+		}
+		return cells;
+	}
+
+	/** Converts a list of cells into a path, adding up the cost of each step
+	 *
+	 * @param cells the cells of the path
+	 * @return the path */
+	private Path toPath(IntList cells)
+	{
+		int[] pathCells = new int[cells.size()];
+		int[] costs = new int[cells.size()];
+		for (int i = 0; i < cells.size(); i++)
+		{
+			pathCells[i] = cells.get(i);
+			if (i > 0)
+				costs[i] = costs[i - 1] + getStepCost(pathCells[i]);
+		}
+		return new Path(pathCells, costs);
+	}
+
+	/** Gets a cluster, building it if it does not exist
+	 *
+	 * @param index the index of the cluster
+	 * @return the cluster */
+	private Cluster getCluster(int index)
+	{
+		if (clusters[index] == null)
+			clusters[index] = buildCluster(index % clustersWide, index
+					/ clustersWide);
+		return clusters[index];
+	}
+
+	/** Gets the index of the cluster containing a cell
+	 *
+	 * @param cell the cell index
+	 * @return the index of its cluster */
+	private int getClusterIndex(int cell)
+	{
+		return board.getCellY(cell) / CLUSTER_SIZE * clustersWide
+				+ board.getCellX(cell) / CLUSTER_SIZE;
+	}
+
+	/** Builds a cluster by finding the nodes along each of its edges and the
+	 * cost of travelling between each pair of them
+	 *
+	 * @param clusterX the x coordinate of the cluster
+	 * @param clusterY the y coordinate of the cluster
+	 * @return the cluster */
+	private Cluster buildCluster(int clusterX, int clusterY)
+	{
+		Cluster cluster = new Cluster();
+		cluster.x = clusterX * CLUSTER_SIZE;
+		cluster.y = clusterY * CLUSTER_SIZE;
+		cluster.width = Math.min(CLUSTER_SIZE, board.getGridWidth()
+				- cluster.x);
+		cluster.height = Math.min(CLUSTER_SIZE, board.getGridHeight()
+				- cluster.y);
+
+		// Left, right, top and bottom edges
+		if (clusterX > 0)
+			addEntrances(cluster, cluster.x, cluster.y, 0, 1, cluster.height,
+					-1, 0);
+		if (clusterX < clustersWide - 1)
+			addEntrances(cluster, cluster.x + cluster.width - 1, cluster.y, 0,
+					1, cluster.height, 1, 0);
+		if (clusterY > 0)
+			addEntrances(cluster, cluster.x, cluster.y, 1, 0, cluster.width,
+					0, -1);
+		if (clusterY < clustersHigh - 1)
+			addEntrances(cluster, cluster.x, cluster.y + cluster.height - 1, 1,
+					0, cluster.width, 0, 1);
+
+		int n = cluster.numNodes;
+		cluster.distances = new int[n * n];
+		for (int i = 0; i < n; i++)
+		{
+			searchCluster(cluster, cluster.nodeCell[i], false);
+			for (int j = 0; j < n; j++)
+				cluster.distances[i * n + j] = getLocalCost(cluster.nodeCell[j]);
+		}
+		return cluster;
+	}
+
+	/** Adds a node for every entrance along one edge of a cluster. An entrance
+	 * is a run of cells where both the cell inside the cluster and the one
+	 * across the edge can be walked on. The same entrances are found from both
+	 * sides of an edge, so the nodes of neighboring clusters always pair up
+	 *
+	 * @param cluster the cluster to add the nodes to
+	 * @param x the x coordinate of the first cell of the edge
+	 * @param y the y coordinate of the first cell of the edge
+	 * @param stepX the change in x along the edge
+	 * @param stepY the change in y along the edge
+	 * @param length the number of cells along the edge
+	 * @param acrossX the change in x to cross the edge
+	 * @param acrossY the change in y to cross the edge */
+	private void addEntrances(Cluster cluster, int x, int y, int stepX,
+			int stepY, int length, int acrossX, int acrossY)
+	{
+		int runStart = -1;
+		for (int i = 0; i <= length; i++)
+		{
+			int cellX = x + stepX * i;
+			int cellY = y + stepY * i;
+			boolean open = i < length && board.isValid(cellX, cellY)
+					&& board.isValid(cellX + acrossX, cellY + acrossY);
+			if (open && runStart == -1)
+				runStart = i;
+			else if (!open && runStart != -1)
+			{
+				int runLength = i - runStart;
+				if (runLength >= WIDE_ENTRANCE)
+				{
+					addNode(cluster, x + stepX * runStart, y + stepY
+							* runStart, acrossX, acrossY);
+					addNode(cluster, x + stepX * (i - 1), y + stepY * (i - 1),
+							acrossX, acrossY);
+				} else
+				{
+					int middle = runStart + runLength / 2;
+					addNode(cluster, x + stepX * middle, y + stepY * middle,
+							acrossX, acrossY);
+				}
+				runStart = -1;
+			}
+		}
+	}
+
+	/** Adds a node to a cluster
+	 *
+	 * @param cluster the cluster to add to
+	 * @param x the x coordinate of the node
+	 * @param y the y coordinate of the node
+	 * @param acrossX the change in x to reach the partner cell
+	 * @param acrossY the change in y to reach the partner cell */
+	private void addNode(Cluster cluster, int x, int y, int acrossX,
+			int acrossY)
+	{
+		cluster.nodeCell[cluster.numNodes] = board.getCell(x, y);
+		cluster.partnerCell[cluster.numNodes] = board.getCell(x + acrossX, y
+				+ acrossY);
+		cluster.numNodes++;
+	}
+
+	/** Runs Dijkstra's algorithm inside a single cluster. Going forward finds
+	 * the cost of travelling from the source to every cell; going in reverse
+	 * finds the cost of travelling from every cell to the source
+	 *
+	 * @param cluster the cluster to search in
+	 * @param source the cell the search begins at
+	 * @param reverse true to find the costs of travelling to the source */
+	private void searchCluster(Cluster cluster, int source, boolean reverse)
+	{
+		localCluster = cluster;
+		localSearch++;
+		localHeap.clear();
+		setLocalCost(source, 0, -1);
+		localHeap.push(source, 0, 0);
+
+		while (!localHeap.isEmpty())
+		{
+			int cell = localHeap.peekCell();
+			int cost = localHeap.peekPriority();
+			localHeap.pop();
+			if (cost != getLocalCost(cell))
+				continue;
+
+			int x = board.getCellX(cell);
+			int y = board.getCellY(cell);
+			// Going in reverse, leaving a cell costs what it cost to enter it
+			int leaveCost = reverse ? cost + getStepCost(cell) : cost;
+			relaxLocal(cell, leaveCost, x + 1, y, reverse);
+			relaxLocal(cell, leaveCost, x - 1, y, reverse);
+			relaxLocal(cell, leaveCost, x, y + 1, reverse);
+			relaxLocal(cell, leaveCost, x, y - 1, reverse);
+		}
+	}
+
+	/** Attempts to reach a neighbor during a search of a cluster
+	 *
+	 * @param from the cell being expanded
+	 * @param cost the cost so far, including the cost of the expanded cell
+	 *            when searching in reverse
+	 * @param x the x coordinate of the neighbor
+	 * @param y the y coordinate of the neighbor
+	 * @param reverse true if the search is in reverse */
+	private void relaxLocal(int from, int cost, int x, int y, boolean reverse)
+	{
+		if (!localCluster.contains(x, y) || !board.isValid(x, y))
+			return;
+		int cell = board.getCell(x, y);
+		int newCost = reverse ? cost : cost + getStepCost(cell);
+		if (newCost < getLocalCost(cell))
+		{
+			setLocalCost(cell, newCost, from);
+			localHeap.push(cell, newCost, 0);
+		}
+	}
+
+	/** Gets the cost of a cell found by the last search of a cluster
+	 *
+	 * @param cell the cell index
+	 * @return the cost, or UNREACHED if it was not reached */
+	private int getLocalCost(int cell)
+	{
+		int i = getLocalIndex(cell);
+		if (i == -1 || localSearched[i] != localSearch)
+			return UNREACHED;
+		return localCost[i];
+	}
+
+	/** Sets the cost of a cell in the search of a cluster
+	 *
+	 * @param cell the cell index
+	 * @param cost the cost of the cell
+	 * @param from the cell it was reached from */
+	private void setLocalCost(int cell, int cost, int from)
+	{
+		int i = getLocalIndex(cell);
+		localSearched[i] = localSearch;
+		localCost[i] = cost;
+		localParent[i] = from;
+	}
+
+	/** Gets the index of a cell in the arrays of the cluster being searched
+	 *
+	 * @param cell the cell index
+	 * @return the index in the cluster, or -1 if it is outside of it */
+	private int getLocalIndex(int cell)
+	{
+		int x = board.getCellX(cell);
+		int y = board.getCellY(cell);
+		if (!localCluster.contains(x, y))
+			return -1;
+		return (y - localCluster.y) * CLUSTER_SIZE + (x - localCluster.x);
+	}
+
+	/** Adds the path found by the last forward search of a cluster to a list
+	 * of cells, not including the cell the search began at
+	 *
+	 * @param cells the list to add to
+	 * @param target the cell to travel to */
+	private void appendLocalPath(IntList cells, int target)
+	{
+		int first = cells.size();
+		for (int cell = target; localParent[getLocalIndex(cell)] != -1; cell = localParent[getLocalIndex(cell)])
+			cells.add(cell);
+		cells.reverse(first);
+	}
+
+	/** Gets the cost of entering a cell
+	 *
+	 * @param cell the cell index
+	 * @return the cost of moving onto that cell */
+	private int getStepCost(int cell)
+	{
+		return Math.max(1, board.getCost(board.getCellX(cell),
+				board.getCellY(cell)));
+	}
+
+	/** A growable list of ints */
+	private static class IntList
+	{
+		private int[] values = new int[32];
+		private int size;
+
+		private void add(int value)
+		{
+			if (size == values.length)
+				values = Arrays.copyOf(values, size * 2);
+			values[size++] = value;
+		}
+
+		private int get(int i)
+		{
+			return values[i];
+		}
+
+		private int size()
+		{
+			return size;
+		}
+
+		/** Reverses the values from an index to the end of the list
+		 *
+		 * @param from the first index to reverse */
+		private void reverse(int from)
+		{
+			for (int i = from, j = size - 1; i < j; i++, j--)
+			{
+				int temp = values[i];
+				values[i] = values[j];
+				values[j] = temp;
+			}
+		}
+	}
+
+}
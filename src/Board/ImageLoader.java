@@ -0,0 +1,119 @@
+package Board;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+/** Reads images from files and converts them to the format of the screen, so
+ * that drawing them is a straight copy rather than converting every pixel each
+ * time. Images read from GIF and PNG files are usually stored as indexed
+ * colors, which can only be drawn through the slowest drawing routines.
+ *
+ * Without a screen, such as when the game is simulated, images are converted
+ * to plain RGB or ARGB pixels instead.
+ *
+ * @author Shiranka Miskin
+ * @version January 2013 */
+public class ImageLoader
+{
+
+	private static GraphicsConfiguration config;
+	private static boolean configFound;
+
+	private static int imagesLoaded;
+	private static long loadNanos;
+
+	/** Reads an image from a file and converts it to the format of the screen
+	 *
+	 * @param file the image file
+	 * @return the converted image, or null if the file is not a known image
+	 *         format
+	 * @throws IOException */
+	public static BufferedImage load(File file) throws IOException
+	{
+		long start = System.nanoTime();
+		BufferedImage image = ImageIO.read(file);
+		if (image == null)
+			return null;
+		image = toCompatible(image);
+		synchronized (ImageLoader.class)
+		{
+			imagesLoaded++;
+			loadNanos += System.nanoTime() - start;
+		}
+		return image;
+	}
+
+	/** Converts an image to the format of the screen, keeping its transparency
+	 *
+	 * @param image the image to convert
+	 * @return the converted image, or the same image if it is already in the
+	 *         right format */
+	public static BufferedImage toCompatible(BufferedImage image)
+	{
+		int transparency = image.getColorModel().getTransparency();
+		GraphicsConfiguration screen = getConfiguration();
+		BufferedImage converted;
+		if (screen != null)
+		{
+			if (image.getColorModel().equals(
+					screen.getColorModel(transparency)))
+				return image;
+			converted = screen.createCompatibleImage(image.getWidth(),
+					image.getHeight(), transparency);
+		} else
+		{
+			int type = BufferedImage.TYPE_INT_ARGB;
+			if (transparency == Transparency.OPAQUE)
+				type = BufferedImage.TYPE_INT_RGB;
+			if (image.getType() == type)
+				return image;
+			converted = new BufferedImage(image.getWidth(), image.getHeight(),
+					type);
+		}
+
+		Graphics2D g = converted.createGraphics();
+		g.drawImage(image, 0, 0, null);
+		g.dispose();
+		return converted;
+	}
+
+	/** Gets the number of images that have been loaded
+	 *
+	 * @return the number of images loaded */
+	public static synchronized int getImagesLoaded()
+	{
+		return imagesLoaded;
+	}
+
+	/** Gets the total time spent reading and converting images
+	 *
+	 * @return the time in milliseconds */
+	public static synchronized long getLoadMillis()
+	{
+		return loadNanos / 1000000;
+	}
+
+	/** Gets the configuration of the default screen, looking it up the first
+	 * time it is needed
+	 *
+	 * @return the configuration, or null if there is no screen */
+	private static synchronized GraphicsConfiguration getConfiguration()
+	{
+		if (!configFound)
+		{
+			configFound = true;
+			if (!GraphicsEnvironment.isHeadless())
+				config = GraphicsEnvironment.getLocalGraphicsEnvironment()
+						.getDefaultScreenDevice().getDefaultConfiguration();
+		}
+		return config;
+	}
+
+}
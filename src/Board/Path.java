@@ -0,0 +1,130 @@
+package Board;
+
+import java.util.ArrayList;
+
+/** A path of cells across a board, from a starting cell to a destination,
+ * along with the total cost of moving along the path up to each cell
+ *
+ * @author Shiranka Miskin
+ * @version January 2013 */
+public class Path
+{
+
+	private int[] cells;
+	private int[] costs;
+
+	/** Creates a path from a list of cells and the cost of reaching each
+	 *
+	 * @param cells the cell indices of the path, starting with the cell the
+	 *            path begins at
+	 * @param costs the total cost of moving to each cell of the path */
+	public Path(int[] cells, int[] costs)
+	{
+		this.cells = cells;
+		this.costs = costs;
+	}
+
+	/** Gets the number of cells in the path (including the start)
+	 *
+	 * @return the length of the path */
+	public int length()
+	{
+		return cells.length;
+	}
+
+	/** Gets a cell of the path
+	 *
+	 * @param i the index along the path, 0 being the start
+	 * @return the cell index at that position of the path */
+	public int getCell(int i)
+	{
+		return cells[i];
+	}
+
+	/** Gets the total cost of moving from the start of the path to a cell
+	 *
+	 * @param i the index along the path
+	 * @return the cost of moving to that position of the path */
+	public int getCost(int i)
+	{
+		return costs[i];
+	}
+
+	/** Gets the cell the path starts at
+	 *
+	 * @return the starting cell */
+	public int getStart()
+	{
+		return cells[0];
+	}
+
+	/** Gets the cell the path ends at
+	 *
+	 * @return the destination cell */
+	public int getEnd()
+	{
+		return cells[cells.length - 1];
+	}
+
+	/** Gets the total cost of the path
+	 *
+	 * @return the cost of moving along the entire path */
+	public int getTotalCost()
+	{
+		return costs[costs.length - 1];
+	}
+
+	/** Splits the path into the legs a unit would travel on each turn. Each
+	 * leg costs less than the movement range (the same rule as a movement
+	 * grid) and never ends on a cell occupied by a unit, so the end of the
+	 * first leg is always a valid move if the path has not been blocked
+	 *
+	 * @param moveRange the movement range of the unit
+	 * @param board the board the path is on
+	 * @return the legs of the path, each starting where the last one ended */
+	public ArrayList<Path> getTurnLegs(int moveRange, Board board)
+	{
+		ArrayList<Path> legs = new ArrayList<Path>();
+		int legStart = 0;
+		while (legStart < cells.length - 1)
+		{
+			// Travels as far as the movement range allows
+			int legEnd = legStart;
+			while (legEnd + 1 < cells.length
+					&& costs[legEnd + 1] - costs[legStart] < moveRange)
+				legEnd++;
+
+			// Back up until the leg ends on a free cell
+			while (legEnd > legStart
+					&& board.isOccupied(board.getCellX(cells[legEnd]),
+							board.getCellY(cells[legEnd])))
+				legEnd--;
+
+			// If no progress can be made the rest of the path is blocked
+			if (legEnd == legStart)
+				break;
+
+			legs.add(subPath(legStart, legEnd));
+			legStart = legEnd;
+		}
+		return legs;
+	}
+
+	/** Creates a path out of part of this path
+	 *
+	 * @param from the index of the first cell
+	 * @param to the index of the last cell
+	 * @return the part of the path, with costs starting from 0 */
+	private Path subPath(int from, int to)
+	{
+		int[] subCells = new int[to - from + 1];
+		int[] subCosts = new int[to - from + 1];
+		for (int i = from; i <= to; i++)
+		{
+			subCells[i - from] = cells[i];
+			subCosts[i - from] = costs[i] - costs[from];
+		}
+		return new Path(subCells, subCosts);
+	}
+
+}
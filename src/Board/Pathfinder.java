@@ -0,0 +1,191 @@
+package Board;
+
+import java.awt.Point;
+import java.util.Arrays;
+
+/** Finds the cheapest path between two locations on a board using A*, with
+ * the Manhattan distance as the heuristic and the tile costs as the cost of
+ * entering each location. Units block the path except at the destination, so
+ * that a path can be found towards an enemy.
+ *
+ * The arrays used for the search are kept between searches and are marked with
+ * a search number instead of being cleared, so a search only touches the
+ * locations it explores.
+ *
+ * @author Shiranka Miskin
+ * @version January 2013 */
+public class Pathfinder
+{
+
+	private Board board;
+	private int width;
+	private int height;
+
+	// The search that each cell's data belongs to
+	private int[] openedSearch;
+	private int[] closedSearch;
+	private int search;
+
+	private int[] costSoFar;
+	private int[] parent;
+
+	// The cells to expand, ordered by estimated total cost
+	private CellHeap heap;
+
+	private int nodesExpanded;
+
+	/** Creates a pathfinder for a board
+	 *
+	 * @param board the board to find paths on */
+	public Pathfinder(Board board)
+	{
+		this.board = board;
+		heap = new CellHeap();
+	}
+
+	/** Finds the cheapest path between two points
+	 *
+	 * @param start the location to start from
+	 * @param goal the location to travel to
+	 * @return the path, or null if the goal cannot be reached */
+	public Path findPath(Point start, Point goal)
+	{
+		return findPath(board.getCell(start), board.getCell(goal));
+	}
+
+	/** Finds the cheapest path between two cells
+	 *
+	 * @param start the cell index to start from
+	 * @param goal the cell index to travel to
+	 * @return the path, or null if the goal cannot be reached */
+	public Path findPath(int start, int goal)
+	{
+		prepare();
+		nodesExpanded = 0;
+		int goalX = board.getCellX(goal);
+		int goalY = board.getCellY(goal);
+
+		open(start, 0, -1, goalX, goalY);
+		while (!heap.isEmpty())
+		{
+			int cell = heap.peekCell();
+			int cost = heap.peekTieBreaker();
+			heap.pop();
+
+			// Skip cells that have already been expanded through a cheaper
+			// route
+			if (closedSearch[cell] == search || cost != costSoFar[cell])
+				continue;
+			closedSearch[cell] = search;
+			nodesExpanded++;
+
+			if (cell == goal)
+				return buildPath(goal);
+
+			int x = board.getCellX(cell);
+			int y = board.getCellY(cell);
+			expand(cell, cost, x + 1, y, goal, goalX, goalY);
+			expand(cell, cost, x - 1, y, goal, goalX, goalY);
+			expand(cell, cost, x, y + 1, goal, goalX, goalY);
+			expand(cell, cost, x, y - 1, goal, goalX, goalY);
+		}
+		return null;
+	}
+
+	/** Gets the number of cells that were expanded by the last search
+	 *
+	 * @return the number of expanded cells */
+	public int getNodesExpanded()
+	{
+		return nodesExpanded;
+	}
+
+	/** Makes sure the arrays fit the board and starts a new search */
+	private void prepare()
+	{
+		if (width != board.getGridWidth() || height != board.getGridHeight())
+		{
+			width = board.getGridWidth();
+			height = board.getGridHeight();
+			openedSearch = new int[width * height];
+			closedSearch = new int[width * height];
+			costSoFar = new int[width * height];
+			parent = new int[width * height];
+			search = 0;
+		}
+		search++;
+		// Once the search number wraps around, the old marks are cleared
+		if (search == Integer.MAX_VALUE)
+		{
+			Arrays.fill(openedSearch, 0);
+			Arrays.fill(closedSearch, 0);
+			search = 1;
+		}
+		heap.clear();
+	}
+
+	/** Attempts to move from an expanded cell to one of its neighbors
+	 *
+	 * @param from the cell being expanded
+	 * @param cost the cost of reaching the cell being expanded
+	 * @param x the x coordinate of the neighbor
+	 * @param y the y coordinate of the neighbor
+	 * @param goal the destination cell
+	 * @param goalX the x coordinate of the destination
+	 * @param goalY the y coordinate of the destination */
+	private void expand(int from, int cost, int x, int y, int goal, int goalX,
+			int goalY)
+	{
+		if (!board.isValid(x, y))
+			return;
+		int cell = board.getCell(x, y);
+		if (cell != goal && board.isOccupied(x, y))
+			return;
+		int newCost = cost + Math.max(1, board.getCost(x, y));
+		if (openedSearch[cell] != search || newCost < costSoFar[cell])
+			open(cell, newCost, from, goalX, goalY);
+	}
+
+	/** Records a new cost for a cell and adds it to the heap
+	 *
+	 * @param cell the cell being opened
+	 * @param cost the cost of reaching the cell
+	 * @param from the cell it was reached from
+	 * @param goalX the x coordinate of the destination
+	 * @param goalY the y coordinate of the destination */
+	private void open(int cell, int cost, int from, int goalX, int goalY)
+	{
+		openedSearch[cell] = search;
+		costSoFar[cell] = cost;
+		parent[cell] = from;
+
+		// Every step costs at least 1, so the Manhattan distance never
+		// overestimates the remaining cost. Ties in the estimate go to the
+		// cell that has travelled further, which keeps the search heading
+		// straight for the goal across open ground
+		int estimate = cost + Math.abs(board.getCellX(cell) - goalX)
+				+ Math.abs(board.getCellY(cell) - goalY);
+		heap.push(cell, estimate, cost);
+	}
+
+	/** Follows the parents back from the goal to create the path
+	 *
+	 * @param goal the destination cell
+	 * @return the path from the start to the goal */
+	private Path buildPath(int goal)
+	{
+		int length = 0;
+		for (int cell = goal; cell != -1; cell = parent[cell])
+			length++;
+		int[] cells = new int[length];
+		int[] costs = new int[length];
+		for (int cell = goal; cell != -1; cell = parent[cell])
+		{
+			length--;
+			cells[length] = cell;
+			costs[length] = costSoFar[cell];
+		}
+		return new Path(cells, costs);
+	}
+
+}
@@ -0,0 +1,288 @@
+package Board;
+
+import java.util.HashMap;
+
+/** The shape of the area an ability can reach around its user, stored as the
+ * offsets of every location in it. Templates never change once created, so
+ * every ability with the same shape and radius shares a single one.
+ *
+ * @author Shiranka Miskin
+ * @version January 2013 */
+public class RangeTemplate
+{
+
+	// The largest radius whose square template still has few enough offsets
+	// to fit in an array, which also keeps each offset within half of an int
+	public static final int MAX_RADIUS = 23169;
+
+	/** The shapes a template can have */
+	public enum Shape {
+		// Every location within a Manhattan distance of the center
+		DIAMOND,
+		// Every location within a number of rows and columns of the center
+		SQUARE,
+		// Every location in a straight line from the center along its row,
+		// column or diagonals
+		LINE,
+		// Every location in a straight line from the center along its row or
+		// column
+		CROSS;
+	}
+
+	private static HashMap<Integer, RangeTemplate> templates =
+			new HashMap<Integer, RangeTemplate>();
+
+	private Shape shape;
+	private int radius;
+	// Each offset holds its row in the high half and its column in the low
+	// half, sorted by row and then by column
+	private int[] offsets;
+	// The index of the first offset of each row, from -radius to radius
+	private int[] rowStarts;
+
+	/** Creates a template
+	 *
+	 * @param shape the shape of the template
+	 * @param radius the furthest a location can be from the center */
+	private RangeTemplate(Shape shape, int radius)
+	{
+		this.shape = shape;
+		this.radius = radius;
+
+		// The offsets of each row are counted first so that the array only
+		// holds the locations in the shape rather than the whole square
+		// around it
+		int size = Math.max(radius * 2 + 1, 0);
+		rowStarts = new int[size + 1];
+		for (int dy = -radius; dy <= radius; dy++)
+		{
+			int rowOffsets = 0;
+			for (int dx = -radius; dx <= radius; dx++)
+				if (contains(dx, dy))
+					rowOffsets++;
+			rowStarts[dy + radius + 1] = rowStarts[dy + radius] + rowOffsets;
+		}
+
+		offsets = new int[rowStarts[size]];
+		int numOffsets = 0;
+		for (int dy = -radius; dy <= radius; dy++)
+			for (int dx = -radius; dx <= radius; dx++)
+				if (contains(dx, dy))
+					offsets[numOffsets++] = (dy << 16) | (dx & 0xFFFF);
+	}
+
+	/** Gets the template of a shape and radius, creating it the first time it
+	 * is asked for
+	 *
+	 * @param shape the shape of the template
+	 * @param radius the furthest a location can be from the center, or -1 for
+	 *            a template with no locations
+	 * @return the template */
+	public static synchronized RangeTemplate get(Shape shape, int radius)
+	{
+		if (radius > MAX_RADIUS)
+			throw new IllegalStateException("Range " + radius + " is too large");
+		if (radius < -1)
+			throw new IllegalStateException("Range " + radius
+					+ " is below -1");
+		Integer key = (radius + 1) * Shape.values().length + shape.ordinal();
+		RangeTemplate template = templates.get(key);
+		if (template == null)
+		{
+			template = new RangeTemplate(shape, radius);
+			templates.put(key, template);
+		}
+		return template;
+	}
+
+	/** Gets the shape of the template
+	 *
+	 * @return the shape */
+	public Shape getShape()
+	{
+		return shape;
+	}
+
+	/** Gets the furthest a location in the template can be from its center
+	 *
+	 * @return the radius */
+	public int getRadius()
+	{
+		return radius;
+	}
+
+	/** Gets the number of locations in the template
+	 *
+	 * @return the number of offsets */
+	public int size()
+	{
+		return offsets.length;
+	}
+
+	/** Gets the column offset of one of the locations in the template
+	 *
+	 * @param index the index of the offset
+	 * @return the distance of the location to the right of the center */
+	public int getDX(int index)
+	{
+		return (short) offsets[index];
+	}
+
+	/** Gets the row offset of one of the locations in the template
+	 *
+	 * @param index the index of the offset
+	 * @return the distance of the location below the center */
+	public int getDY(int index)
+	{
+		return offsets[index] >> 16;
+	}
+
+	/** Determines if a location is part of the template
+	 *
+	 * @param dx the distance of the location to the right of the center
+	 * @param dy the distance of the location below the center
+	 * @return true if the location is in the template, false if not */
+	public boolean contains(int dx, int dy)
+	{
+		dx = Math.abs(dx);
+		dy = Math.abs(dy);
+		if (dx > radius || dy > radius)
+			return false;
+		switch (shape)
+		{
+		case DIAMOND:
+			return dx + dy <= radius;
+		case SQUARE:
+			return true;
+		case LINE:
+			return dx == 0 || dy == 0 || dx == dy;
+		case CROSS:
+			return dx == 0 || dy == 0;
+		}
+		return false;
+	}
+
+	/** Determines if the template placed at one location covers another
+	 *
+	 * @param centerX the x coordinate of the center of the template
+	 * @param centerY the y coordinate of the center of the template
+	 * @param targetX the x coordinate of the location to check
+	 * @param targetY the y coordinate of the location to check
+	 * @return true if the location is covered, false if not */
+	public boolean contains(int centerX, int centerY, int targetX, int targetY)
+	{
+		return contains(targetX - centerX, targetY - centerY);
+	}
+
+	/** Adds every cell of a board that the template covers to a set
+	 *
+	 * @param center the cell index of the center of the template
+	 * @param board the board the template is placed on
+	 * @param cells the set to add the cells to */
+	public void addCells(int center, Board board, CellSet cells)
+	{
+		int centerX = board.getCellX(center);
+		int centerY = board.getCellY(center);
+		int width = board.getGridWidth();
+		int height = board.getGridHeight();
+
+		// Rows off the board are skipped without looking at their offsets
+		int firstRow = Math.max(-radius, -centerY);
+		int lastRow = Math.min(radius, height - 1 - centerY);
+		if (firstRow > lastRow)
+			return;
+		for (int i = rowStarts[firstRow + radius]; i < rowStarts[lastRow
+				+ radius + 1]; i++)
+		{
+			int x = centerX + (short) offsets[i];
+			if (x >= 0 && x < width)
+				cells.add((centerY + (offsets[i] >> 16)) * width + x);
+		}
+	}
+
+	/** Steps through the locations of a template that are on a board, without
+	 * creating any objects. A single clip can be reused for any number of
+	 * templates */
+	public static class Clip
+	{
+		private int[] offsets;
+		private int index;
+		private int end;
+		private int centerX;
+		private int centerY;
+		private int width;
+		private int x;
+		private int y;
+
+		/** Starts stepping through a template placed on a board
+		 *
+		 * @param template the template
+		 * @param centerX the x coordinate of the center of the template
+		 * @param centerY the y coordinate of the center of the template
+		 * @param width the width of the board
+		 * @param height the height of the board */
+		public void start(RangeTemplate template, int centerX, int centerY,
+				int width, int height)
+		{
+			int radius = template.radius;
+			offsets = template.offsets;
+			this.centerX = centerX;
+			this.centerY = centerY;
+			this.width = width;
+			int firstRow = Math.max(-radius, -centerY);
+			int lastRow = Math.min(radius, height - 1 - centerY);
+			if (firstRow > lastRow)
+			{
+				index = 0;
+				end = 0;
+				return;
+			}
+			index = template.rowStarts[firstRow + radius];
+			end = template.rowStarts[lastRow + radius + 1];
+		}
+
+		/** Moves on to the next location that is on the board
+		 *
+		 * @return true if there was another location, false if every location
+		 *         has been stepped through */
+		public boolean next()
+		{
+			while (index < end)
+			{
+				int offset = offsets[index++];
+				x = centerX + (short) offset;
+				if (x >= 0 && x < width)
+				{
+					y = centerY + (offset >> 16);
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/** Gets the x coordinate of the current location
+		 *
+		 * @return the x coordinate */
+		public int getX()
+		{
+			return x;
+		}
+
+		/** Gets the y coordinate of the current location
+		 *
+		 * @return the y coordinate */
+		public int getY()
+		{
+			return y;
+		}
+
+		/** Gets the cell index of the current location
+		 *
+		 * @return the cell index */
+		public int getCell()
+		{
+			return y * width + x;
+		}
+	}
+
+}
@@ -0,0 +1,169 @@
+package Board;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/** Works out the reachability maps of a group of units at once, splitting the
+ * units between the threads of a fork-join pool. Everything the maps depend on
+ * is copied when the batch is created, so the board can keep changing while
+ * the maps are being worked out. Only the part of the board each unit can
+ * reach is copied, so creating a batch costs the same on any size of board.
+ *
+ * @author Shiranka Miskin
+ * @version January 2013 */
+public class ReachabilityBatch
+{
+
+	private int terrainVersion;
+	private int occupancyVersion;
+	private int boardWidth;
+	private ArrayList<Unit> units;
+	private BoardWindow[] windows;
+	private int[] originXs;
+	private int[] originYs;
+	private int[] ranges;
+	private ReachabilityMap[] maps;
+	private ForkJoinTask<Void> task;
+
+	/** Works out the maps of a range of the units, splitting the range in half
+	 * until there is a single unit left */
+	private class ComputeTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private int start;
+		private int end;
+
+		/** Creates a task for a range of the units
+		 *
+		 * @param start the index of the first unit
+		 * @param end the index after the last unit */
+		private ComputeTask(int start, int end)
+		{
+			this.start = start;
+			this.end = end;
+		}
+
+		/** Works out the maps of the units in the range */
+		protected void compute()
+		{
+			if (end - start <= 1)
+			{
+				for (int i = start; i < end; i++)
+				{
+					maps[i] = new ReachabilityMap();
+					maps[i].compute(windows[i], originXs[i], originYs[i],
+							ranges[i]);
+				}
+				return;
+			}
+			int middle = (start + end) / 2;
+			invokeAll(new ComputeTask(start, middle), new ComputeTask(middle,
+					end));
+		}
+	}
+
+	/** Creates a batch for the units on a board, copying the part of the
+	 * board each unit can reach along with its position and movement range
+	 *
+	 * @param board the board the units are on
+	 * @param units the units to work out the maps of, where units that are
+	 *            not on the board are left out */
+	public ReachabilityBatch(Board board, Collection<Unit> units)
+	{
+		terrainVersion = board.getTerrainVersion();
+		occupancyVersion = board.getOccupancyVersion();
+		boardWidth = board.getGridWidth();
+		this.units = new ArrayList<Unit>(units.size());
+		windows = new BoardWindow[units.size()];
+		originXs = new int[units.size()];
+		originYs = new int[units.size()];
+		ranges = new int[units.size()];
+		for (Unit unit : units)
+		{
+			Point pos = board.getUnitPos(unit);
+			if (pos == null)
+				continue;
+			int index = this.units.size();
+			originXs[index] = pos.x;
+			originYs[index] = pos.y;
+			ranges[index] = unit.getMoveRange();
+			windows[index] = new BoardWindow(board, pos.x, pos.y,
+					ranges[index]);
+			this.units.add(unit);
+		}
+		maps = new ReachabilityMap[this.units.size()];
+	}
+
+	/** Works out the maps of every unit on a board, waiting until they are
+	 * done
+	 *
+	 * @param board the board the units are on
+	 * @param units the units to work out the maps of
+	 * @return the map of each unit */
+	public static Map<Unit, ReachabilityMap> computeAll(Board board,
+			Collection<Unit> units)
+	{
+		ReachabilityBatch batch = new ReachabilityBatch(board, units);
+		batch.start();
+		return batch.getMaps();
+	}
+
+	/** Starts working out the maps in the background */
+	public void start()
+	{
+		if (task == null)
+			task = ForkJoinPool.commonPool().submit(
+					new ComputeTask(0, units.size()));
+	}
+
+	/** Determines if every map has been worked out
+	 *
+	 * @return true if the maps are ready, false if not */
+	public boolean isDone()
+	{
+		return task != null && task.isDone();
+	}
+
+	/** Gets the map of every unit, waiting until they have been worked out
+	 *
+	 * @return the map of each unit */
+	public Map<Unit, ReachabilityMap> getMaps()
+	{
+		join();
+		Map<Unit, ReachabilityMap> mapsByUnit = new HashMap<Unit, ReachabilityMap>();
+		for (int i = 0; i < units.size(); i++)
+			mapsByUnit.put(units.get(i), maps[i]);
+		return mapsByUnit;
+	}
+
+	/** Adds the maps to a cache, so that asking the cache for any of them
+	 * while the board is unchanged since the batch was created is free. At
+	 * most one less than the capacity of the cache are added, so the map used
+	 * most recently is never pushed out and reused while it is still in use
+	 *
+	 * @param cache the cache to add the maps to */
+	public void addTo(ReachabilityCache cache)
+	{
+		join();
+		int count = Math.min(units.size(), cache.getCapacity() - 1);
+		for (int i = 0; i < count; i++)
+			cache.put(units.get(i), originYs[i] * boardWidth + originXs[i],
+					ranges[i], terrainVersion, occupancyVersion, maps[i]);
+	}
+
+	/** Waits until every map has been worked out, starting the work if it has
+	 * not been started */
+	private void join()
+	{
+		start();
+		task.join();
+	}
+
+}
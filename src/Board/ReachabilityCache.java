@@ -0,0 +1,176 @@
+package Board;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Remembers the most recently used reachability maps so that asking for the
+ * movement of a unit again is free as long as the board has not changed. Maps
+ * are looked up by the unit, its position and movement range and the terrain
+ * and occupancy versions of the board, so any change to the board makes the
+ * old maps unreachable and they are eventually pushed out of the cache.
+ *
+ * The maps handed out belong to the cache and are reused once they have been
+ * pushed out, so a map should not be held on to after asking for another.
+ *
+ * @author Shiranka Miskin
+ * @version January 2013 */
+public class ReachabilityCache
+{
+
+	public static final int DEFAULT_CAPACITY = 32;
+
+	private int capacity;
+	private LinkedHashMap<Key, ReachabilityMap> maps;
+	// Maps that have been pushed out of the cache and can be reused
+	private ArrayList<ReachabilityMap> spareMaps;
+
+	private int hits;
+	private int misses;
+
+	/** Everything a reachability map depends on */
+	private static class Key
+	{
+		private Unit unit;
+		private int origin;
+		private int range;
+		private int terrainVersion;
+		private int occupancyVersion;
+
+		private Key(Unit unit, int origin, int range, int terrainVersion,
+				int occupancyVersion)
+		{
+			this.unit = unit;
+			this.origin = origin;
+			this.range = range;
+			this.terrainVersion = terrainVersion;
+			this.occupancyVersion = occupancyVersion;
+		}
+
+		public boolean equals(Object other)
+		{
+			if (!(other instanceof Key))
+				return false;
+			Key key = (Key) other;
+			return unit == key.unit && origin == key.origin
+					&& range == key.range
+					&& terrainVersion == key.terrainVersion
+					&& occupancyVersion == key.occupancyVersion;
+		}
+
+		public int hashCode()
+		{
+			int hash = System.identityHashCode(unit);
+			hash = hash * 31 + origin;
+			hash = hash * 31 + range;
+			hash = hash * 31 + terrainVersion;
+			return hash * 31 + occupancyVersion;
+		}
+	}
+
+	/** Creates a cache holding the default number of maps */
+	public ReachabilityCache()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	/** Creates a cache
+	 *
+	 * @param capacity the most maps to hold at once (at least 2) */
+	public ReachabilityCache(int capacity)
+	{
+		this.capacity = Math.max(2, capacity);
+		spareMaps = new ArrayList<ReachabilityMap>();
+		// Ordered by access so the least recently used map is removed first
+		maps = new LinkedHashMap<Key, ReachabilityMap>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(
+					Map.Entry<Key, ReachabilityMap> eldest)
+			{
+				if (size() <= ReachabilityCache.this.capacity)
+					return false;
+				spareMaps.add(eldest.getValue());
+				return true;
+			}
+		};
+	}
+
+	/** Gets the reachability map of a unit, only calculating it if it is not
+	 * already in the cache
+	 *
+	 * @param board the board the unit is on
+	 * @param unit the unit moving
+	 * @param origin the location the unit moves from
+	 * @param range the movement range of the unit
+	 * @return the map of every location the unit can reach */
+	public ReachabilityMap get(Board board, Unit unit, Point origin, int range)
+	{
+		Key key = new Key(unit, board.getCell(origin), range,
+				board.getTerrainVersion(), board.getOccupancyVersion());
+		ReachabilityMap map = maps.get(key);
+		if (map != null)
+		{
+			hits++;
+			return map;
+		}
+
+		misses++;
+		if (spareMaps.isEmpty())
+			map = new ReachabilityMap();
+		else
+			map = spareMaps.remove(spareMaps.size() - 1);
+		map.compute(board, origin, range);
+		maps.put(key, map);
+		return map;
+	}
+
+	/** Adds a map that was calculated elsewhere to the cache
+	 *
+	 * @param unit the unit moving
+	 * @param origin the cell index the unit moves from
+	 * @param range the movement range of the unit
+	 * @param terrainVersion the terrain version the map was calculated at
+	 * @param occupancyVersion the occupancy version the map was calculated at
+	 * @param map the map of every location the unit can reach */
+	public void put(Unit unit, int origin, int range, int terrainVersion,
+			int occupancyVersion, ReachabilityMap map)
+	{
+		maps.put(new Key(unit, origin, range, terrainVersion,
+				occupancyVersion), map);
+	}
+
+	/** Gets the most maps the cache holds at once
+	 *
+	 * @return the capacity */
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	/** Removes every map from the cache */
+	public void clear()
+	{
+		spareMaps.addAll(maps.values());
+		maps.clear();
+	}
+
+	/** Gets the number of maps that were found in the cache
+	 *
+	 * @return the number of cache hits */
+	public int getHits()
+	{
+		return hits;
+	}
+
+	/** Gets the number of maps that had to be calculated
+	 *
+	 * @return the number of cache misses */
+	public int getMisses()
+	{
+		return misses;
+	}
+
+}
@@ -0,0 +1,309 @@
+package Board;
+
+import java.awt.Point;
+import java.util.Arrays;
+
+/** A map of every grid location a unit is able to move to, along with the cost
+ * of reaching each location and the location it was reached from (used for
+ * pathfinding). Locations are stored as cell indices (y * width + x).
+ *
+ * The map is generated with a bucket queue version of Dijkstra's algorithm, as
+ * tile costs are small integers. Only the square of the board that could
+ * possibly be reached within the movement range is stored, and the map is
+ * meant to be reused so that no memory is allocated once it has grown to the
+ * size it needs.
+ *
+ * @author Shiranka Miskin
+ * @version January 2013 */
+public class ReachabilityMap
+{
+
+	private static final int UNREACHED = Integer.MAX_VALUE;
+	private static final int NO_PARENT = -1;
+
+	private int boardWidth;
+	private int boardHeight;
+	private int originCell;
+	private int range;
+
+	// The window of the board that is covered by the arrays
+	private int windowX;
+	private int windowY;
+	private int windowWidth;
+	private int windowHeight;
+
+	private int[] cost;
+	private int[] parent;
+
+	// Every cell reached, in the order they were reached
+	private int[] reached;
+	private int numReached;
+
+	// The bucket queue, with a linked list of entries for every cost
+	private int[] bucketHead;
+	private int[] entryCell;
+	private int[] entryNext;
+	private int numEntries;
+
+	/** Creates an empty reachability map */
+	public ReachabilityMap()
+	{
+		cost = new int[0];
+		parent = new int[0];
+		reached = new int[16];
+		bucketHead = new int[16];
+		entryCell = new int[64];
+		entryNext = new int[64];
+		originCell = NO_PARENT;
+	}
+
+	/** Calculates every location that can be reached from an origin point
+	 *
+	 * @param board the board to move on
+	 * @param origin the starting location
+	 * @param range the movement range */
+	public void compute(BoardView board, Point origin, int range)
+	{
+		compute(board, origin.x, origin.y, range);
+	}
+
+	/** Calculates every location that can be reached from an origin point. A
+	 * location can be reached if the total cost of the tiles travelled over
+	 * (not counting the origin) is less than the movement range, and every
+	 * location along the way is walkable
+	 *
+	 * @param board the board to move on
+	 * @param originX the x coordinate of the starting location
+	 * @param originY the y coordinate of the starting location
+	 * @param range the movement range */
+	public void compute(BoardView board, int originX, int originY, int range)
+	{
+		clear();
+		boardWidth = board.getGridWidth();
+		boardHeight = board.getGridHeight();
+		this.range = range;
+		originCell = originY * boardWidth + originX;
+		if (range <= 0)
+			return;
+
+		// Every step costs at least 1, so nothing further than range - 1
+		// away can ever be reached
+		int radius = range - 1;
+		windowX = Math.max(0, originX - radius);
+		windowY = Math.max(0, originY - radius);
+		windowWidth = Math.min(boardWidth - 1, originX + radius) - windowX + 1;
+		windowHeight = Math.min(boardHeight - 1, originY + radius) - windowY
+				+ 1;
+		ensureCapacity();
+
+		push(0, originX, originY, NO_PARENT);
+		for (int currentCost = 0; currentCost < range; currentCost++)
+		{
+			int entry = bucketHead[currentCost];
+			while (entry != -1)
+			{
+				int cell = entryCell[entry];
+				entry = entryNext[entry];
+				int x = cell % boardWidth;
+				int y = cell / boardWidth;
+
+				// Skip the entry if a cheaper route was found after it was
+				// added to the queue
+				if (cost[local(x, y)] != currentCost)
+					continue;
+				addReached(cell);
+
+				relax(board, cell, x + 1, y, currentCost);
+				relax(board, cell, x - 1, y, currentCost);
+				relax(board, cell, x, y + 1, currentCost);
+				relax(board, cell, x, y - 1, currentCost);
+			}
+		}
+	}
+
+	/** Attempts to reach a neighboring location from a reached cell
+	 *
+	 * @param board the board being moved on
+	 * @param from the cell being moved from
+	 * @param x the x coordinate of the neighbor
+	 * @param y the y coordinate of the neighbor
+	 * @param currentCost the cost of reaching the cell being moved from */
+	private void relax(BoardView board, int from, int x, int y, int currentCost)
+	{
+		if (!inWindow(x, y) || !board.isValid(x, y) || !board.isWalkable(x, y))
+			return;
+		int newCost = currentCost + Math.max(1, board.getCost(x, y));
+		if (newCost < range && newCost < cost[local(x, y)])
+			push(newCost, x, y, from);
+	}
+
+	/** Adds a location to the queue with a new cost
+	 *
+	 * @param newCost the cost of reaching the location
+	 * @param x the x coordinate of the location
+	 * @param y the y coordinate of the location
+	 * @param from the cell it was reached from */
+	private void push(int newCost, int x, int y, int from)
+	{
+		cost[local(x, y)] = newCost;
+		parent[local(x, y)] = from;
+
+		if (numEntries == entryCell.length)
+		{
+			entryCell = Arrays.copyOf(entryCell, numEntries * 2);
+			entryNext = Arrays.copyOf(entryNext, numEntries * 2);
+		}
+		entryCell[numEntries] = y * boardWidth + x;
+		entryNext[numEntries] = bucketHead[newCost];
+		bucketHead[newCost] = numEntries;
+		numEntries++;
+	}
+
+	/** Records a cell as reached
+	 *
+	 * @param cell the cell that has been reached */
+	private void addReached(int cell)
+	{
+		if (numReached == reached.length)
+			reached = Arrays.copyOf(reached, numReached * 2);
+		reached[numReached++] = cell;
+	}
+
+	/** Makes sure the arrays are large enough for the current window and
+	 * range */
+	private void ensureCapacity()
+	{
+		int windowSize = windowWidth * windowHeight;
+		if (cost.length < windowSize)
+		{
+			cost = new int[windowSize];
+			parent = new int[windowSize];
+			Arrays.fill(cost, UNREACHED);
+		}
+		if (bucketHead.length < range)
+			bucketHead = new int[range];
+		Arrays.fill(bucketHead, 0, range, -1);
+	}
+
+	/** Clears the map so that nothing is reachable, only resetting the cells
+	 * that were reached */
+	public void clear()
+	{
+		for (int i = 0; i < numReached; i++)
+		{
+			int cell = reached[i];
+			cost[local(cell % boardWidth, cell / boardWidth)] = UNREACHED;
+		}
+		numReached = 0;
+		numEntries = 0;
+		windowWidth = 0;
+		windowHeight = 0;
+	}
+
+	/** Converts a board coordinate to an index in the window arrays
+	 *
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @return the index of the location in the window */
+	private int local(int x, int y)
+	{
+		return (y - windowY) * windowWidth + (x - windowX);
+	}
+
+	/** Determines if a coordinate lies inside the current window
+	 *
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @return true if the coordinate is in the window, false if not */
+	private boolean inWindow(int x, int y)
+	{
+		return x >= windowX && y >= windowY && x < windowX + windowWidth
+				&& y < windowY + windowHeight;
+	}
+
+	/** Determines if a location can be reached
+	 *
+	 * @param x the x coordinate of the location
+	 * @param y the y coordinate of the location
+	 * @return true if the location can be reached, false if not */
+	public boolean isReachable(int x, int y)
+	{
+		return inWindow(x, y) && cost[local(x, y)] != UNREACHED;
+	}
+
+	/** Determines if a cell can be reached
+	 *
+	 * @param cell the cell index of the location
+	 * @return true if the cell can be reached, false if not */
+	public boolean isReachable(int cell)
+	{
+		return cell >= 0 && boardWidth > 0
+				&& isReachable(cell % boardWidth, cell / boardWidth);
+	}
+
+	/** Gets the cost of moving to a cell
+	 *
+	 * @param cell the cell index of the location
+	 * @return the cost of reaching the cell, or -1 if it cannot be reached */
+	public int getCost(int cell)
+	{
+		if (!isReachable(cell))
+			return -1;
+		return cost[local(cell % boardWidth, cell / boardWidth)];
+	}
+
+	/** Gets the cell that a cell is reached from on the cheapest path
+	 *
+	 * @param cell the cell index of the location
+	 * @return the previous cell on the path, or -1 if the cell is the origin
+	 *         or cannot be reached */
+	public int getParent(int cell)
+	{
+		if (!isReachable(cell))
+			return NO_PARENT;
+		return parent[local(cell % boardWidth, cell / boardWidth)];
+	}
+
+	/** Gets the number of cells that can be reached
+	 *
+	 * @return the number of reachable cells */
+	public int size()
+	{
+		return numReached;
+	}
+
+	/** Gets a reachable cell, in the order the cells were reached
+	 *
+	 * @param i the index of the reached cell, from 0 to size() - 1
+	 * @return the cell index of that location */
+	public int getCell(int i)
+	{
+		return reached[i];
+	}
+
+	/** Gets the cell the map was generated from
+	 *
+	 * @return the cell index of the origin */
+	public int getOrigin()
+	{
+		return originCell;
+	}
+
+	/** Gets the movement range used to generate the map
+	 *
+	 * @return the movement range */
+	public int getRange()
+	{
+		return range;
+	}
+
+	/** Gets the width of the board the map was generated on, used to convert
+	 * cell indices back to coordinates
+	 *
+	 * @return the width of the board */
+	public int getBoardWidth()
+	{
+		return boardWidth;
+	}
+
+}
@@ -0,0 +1,154 @@
+package Board;
+
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.lang.ref.SoftReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Images scaled ahead of time to each size they are drawn at, so that drawing
+ * a sprite at a different size than its image only scales the image the first
+ * time. The images are held through soft references, so they are given back
+ * when memory runs low, and only the most recently used ones are kept.
+ *
+ * @author Shiranka Miskin
+ * @version January 2013 */
+public class ScaledImageCache
+{
+
+	public static final int DEFAULT_CAPACITY = 512;
+
+	private static int capacity = DEFAULT_CAPACITY;
+	// Ordered by access so the least recently drawn image is removed first
+	private static LinkedHashMap<Key, SoftReference<BufferedImage>> images =
+			new LinkedHashMap<Key, SoftReference<BufferedImage>>(16, 0.75f,
+					true)
+			{
+				private static final long serialVersionUID = 1L;
+
+				protected boolean removeEldestEntry(
+						Map.Entry<Key, SoftReference<BufferedImage>> eldest)
+				{
+					return size() > capacity;
+				}
+			};
+
+	private static int imagesScaled;
+
+	/** An image and the size it is scaled to */
+	private static class Key
+	{
+		private BufferedImage image;
+		private int width;
+		private int height;
+
+		private Key(BufferedImage image, int width, int height)
+		{
+			this.image = image;
+			this.width = width;
+			this.height = height;
+		}
+
+		public boolean equals(Object other)
+		{
+			if (!(other instanceof Key))
+				return false;
+			Key key = (Key) other;
+			return image == key.image && width == key.width
+					&& height == key.height;
+		}
+
+		public int hashCode()
+		{
+			int hash = System.identityHashCode(image);
+			hash = hash * 31 + width;
+			return hash * 31 + height;
+		}
+	}
+
+	/** Gets an image scaled to a size, scaling it the first time it is asked
+	 * for at that size
+	 *
+	 * @param image the image to scale
+	 * @param width the width to scale to
+	 * @param height the height to scale to
+	 * @param g the graphics the image will be drawn with, whose device and
+	 *            rendering hints the scaled image is made to match
+	 * @return the scaled image */
+	public static synchronized BufferedImage get(BufferedImage image,
+			int width, int height, Graphics g)
+	{
+		Key key = new Key(image, width, height);
+		SoftReference<BufferedImage> reference = images.get(key);
+		BufferedImage scaled = reference == null ? null : reference.get();
+		if (scaled == null)
+		{
+			scaled = scale(image, width, height, g);
+			images.put(key, new SoftReference<BufferedImage>(scaled));
+		}
+		return scaled;
+	}
+
+	/** Removes every scaled image, such as when the board is zoomed and the
+	 * images will no longer be drawn at their old sizes */
+	public static synchronized void clear()
+	{
+		images.clear();
+	}
+
+	/** Sets the most scaled images to keep at once
+	 *
+	 * @param newCapacity the number of images */
+	public static synchronized void setCapacity(int newCapacity)
+	{
+		capacity = newCapacity;
+	}
+
+	/** Gets the number of images that have been scaled
+	 *
+	 * @return the number of images scaled */
+	public static synchronized int getImagesScaled()
+	{
+		return imagesScaled;
+	}
+
+	/** Scales an image into a new image
+	 *
+	 * @param image the image to scale
+	 * @param width the width to scale to
+	 * @param height the height to scale to
+	 * @param g the graphics the image will be drawn with
+	 * @return the scaled image */
+	private static BufferedImage scale(BufferedImage image, int width,
+			int height, Graphics g)
+	{
+		BufferedImage scaled;
+		Graphics2D scaledGraphics;
+		if (g instanceof Graphics2D)
+		{
+			// An image in the same format as the screen can be drawn to it
+			// without being converted first. Smoothing the edges of an image
+			// with any transparency can leave them partly transparent
+			int transparency = Transparency.TRANSLUCENT;
+			if (image.getColorModel().getTransparency() == Transparency.OPAQUE)
+				transparency = Transparency.OPAQUE;
+			scaled = ((Graphics2D) g).getDeviceConfiguration()
+					.createCompatibleImage(width, height, transparency);
+			scaledGraphics = scaled.createGraphics();
+			scaledGraphics.setRenderingHints(((Graphics2D) g)
+					.getRenderingHints());
+		} else
+		{
+			scaled = new BufferedImage(width, height,
+					BufferedImage.TYPE_INT_ARGB);
+			scaledGraphics = scaled.createGraphics();
+		}
+		scaledGraphics.drawImage(image, 0, 0, width, height, null);
+		scaledGraphics.dispose();
+		imagesScaled++;
+		return scaled;
+	}
+
+}
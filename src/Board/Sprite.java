@@ -5,8 +5,6 @@ import java.awt.image.ImageObserver;
 import java.io.File;
 import java.io.IOException;
 
-import javax.imageio.ImageIO;
-
 /** Stores an animation of either a single frame or numerous frames and draws it.
  * 
  * @author Shiranka Miskin
@@ -34,7 +32,7 @@ public class Sprite
 	 * @throws IOException */
 	public Sprite(File file) throws IOException
 	{
-		firstFrame = new Frame(ImageIO.read(file));
+		firstFrame = new Frame(ImageLoader.load(file));
 		currentFrame = firstFrame;
 		lastFrame = firstFrame;
 		lastFrame.setNext(firstFrame);
@@ -133,6 +131,14 @@ public class Sprite
 
 	}
 
+	/** Advances the animation without drawing it, so that a sprite out of
+	 * sight keeps time with the ones being drawn */
+	public void update()
+	{
+		if (!stopped)
+			animate();
+	}
+
 	/** Sets the sprite to animte */
 	public void play()
 	{
@@ -202,7 +208,7 @@ public class Sprite
 	 * @throws IOException */
 	public void insertFrame(File file) throws IOException
 	{
-		Frame newFrame = new Frame(ImageIO.read(file));
+		Frame newFrame = new Frame(ImageLoader.load(file));
 		lastFrame.setNext(newFrame);
 		lastFrame = newFrame;
 		lastFrame.setNext(firstFrame);
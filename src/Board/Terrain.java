@@ -0,0 +1,141 @@
+package Board;
+
+import java.io.File;
+
+/** The terrain of a board, holding the type and movement cost of every
+ * location by its cell index (y * width + x). Small boards keep the whole
+ * terrain in memory, while huge boards only keep the parts that are being used
+ * and leave the rest on disk.
+ *
+ * @author Shiranka Miskin
+ * @version January 2013 */
+public abstract class Terrain
+{
+
+	// Boards with at least this many cells are split into chunks
+	public static final int CHUNKED_CELLS = 1024 * 1024;
+
+	protected int width;
+	protected int height;
+
+	/** Creates the terrain of a board
+	 *
+	 * @param width the width of the board
+	 * @param height the height of the board */
+	protected Terrain(int width, int height)
+	{
+		this.width = width;
+		this.height = height;
+	}
+
+	/** Creates terrain suited to the size of a board
+	 *
+	 * @param width the width of the board
+	 * @param height the height of the board
+	 * @return the terrain, stored in chunks if the board is huge */
+	public static Terrain create(int width, int height)
+	{
+		if ((long) width * height >= CHUNKED_CELLS)
+			return new ChunkedTerrain(width, height);
+		return new ArrayTerrain(width, height);
+	}
+
+	/** Gets the id of the type of tile at a cell
+	 *
+	 * @param cell the cell index
+	 * @return the tile type id */
+	public abstract int getType(int cell);
+
+	/** Sets the type of tile at a cell
+	 *
+	 * @param cell the cell index
+	 * @param type the tile type id */
+	public abstract void setType(int cell, int type);
+
+	/** Gets the cost of moving onto a cell
+	 *
+	 * @param cell the cell index
+	 * @return the cost of the tile */
+	public abstract int getCost(int cell);
+
+	/** Sets the cost of moving onto a cell
+	 *
+	 * @param cell the cell index
+	 * @param cost the new cost of the tile */
+	public abstract void setCost(int cell, int cost);
+
+	/** Sets the types of a run of cells
+	 *
+	 * @param cell the index of the first cell
+	 * @param types the tile type ids to copy in
+	 * @param length the number of cells to set */
+	public void setTypes(int cell, byte[] types, int length)
+	{
+		for (int i = 0; i < length; i++)
+			setType(cell + i, types[i] & 0xFF);
+	}
+
+	/** Sets the costs of a run of cells
+	 *
+	 * @param cell the index of the first cell
+	 * @param costs the costs to copy in
+	 * @param length the number of cells to set */
+	public void setCosts(int cell, short[] costs, int length)
+	{
+		for (int i = 0; i < length; i++)
+			setCost(cell + i, costs[i]);
+	}
+
+	/** Creates a copy of the terrain that can be changed separately
+	 *
+	 * @return the copy */
+	public Terrain copy()
+	{
+		Terrain copy = create(width, height);
+		for (int cell = 0; cell < width * height; cell++)
+		{
+			copy.setType(cell, getType(cell));
+			copy.setCost(cell, getCost(cell));
+		}
+		return copy;
+	}
+
+	/** Makes sure the terrain no longer reads from a file, so that the file
+	 * can be written over. Terrain kept in memory never reads from a file
+	 *
+	 * @param file the file that is about to be written over */
+	public void detach(File file)
+	{
+	}
+
+	/** Lets go of any files the terrain uses. The terrain cannot be used
+	 * afterwards */
+	public abstract void close();
+
+	/** Gets the width of the terrain
+	 *
+	 * @return the width in cells */
+	public int getWidth()
+	{
+		return width;
+	}
+
+	/** Gets the height of the terrain
+	 *
+	 * @return the height in cells */
+	public int getHeight()
+	{
+		return height;
+	}
+
+	/** Limits a cost to the range that can be stored for a tile
+	 *
+	 * @param cost the cost of a tile
+	 * @return the cost as it is stored */
+	protected static short toStoredCost(int cost)
+	{
+		return (short) Math.max(Short.MIN_VALUE,
+				Math.min(Short.MAX_VALUE, cost));
+	}
+
+}
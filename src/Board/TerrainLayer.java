@@ -0,0 +1,214 @@
+package Board;
+
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** The tiles of a board drawn ahead of time into images, so that drawing the
+ * terrain only takes one image for each chunk of the board on the screen
+ * rather than one for each tile. Each chunk is drawn when it first comes into
+ * view and kept until the scale changes or one of its tiles does.
+ *
+ * @author Shiranka Miskin
+ * @version January 2013 */
+public class TerrainLayer
+{
+
+	// The rough size of each chunk in pixels, whatever the scale
+	public static final int CHUNK_PIXELS = 512;
+	public static final int DEFAULT_CAPACITY = 48;
+
+	private Board board;
+	private int capacity;
+	private LinkedHashMap<Integer, BufferedImage> chunks;
+
+	// What the chunks were drawn for
+	private int scale;
+	private int chunkTiles;
+	private int chunksWide;
+	private int terrainVersion;
+
+	private int chunksRendered;
+
+	/** Creates an empty terrain layer of a board
+	 *
+	 * @param board the board whose tiles are drawn */
+	public TerrainLayer(Board board)
+	{
+		this(board, DEFAULT_CAPACITY);
+	}
+
+	/** Creates an empty terrain layer of a board
+	 *
+	 * @param board the board whose tiles are drawn
+	 * @param capacity the most chunks to keep at once */
+	public TerrainLayer(Board board, int capacity)
+	{
+		this.board = board;
+		this.capacity = capacity;
+		terrainVersion = board.getTerrainVersion();
+
+		// Ordered by access so the chunk that has been off the screen the
+		// longest is removed first
+		chunks = new LinkedHashMap<Integer, BufferedImage>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(
+					Map.Entry<Integer, BufferedImage> eldest)
+			{
+				return size() > TerrainLayer.this.capacity;
+			}
+		};
+	}
+
+	/** Draws the tiles of the board that are inside the clip of the graphics
+	 *
+	 * @param g the graphics to draw with
+	 * @param offsetX the x coordinate of the top left corner of the board
+	 * @param offsetY the y coordinate of the top left corner of the board
+	 * @param scale the size of each tile in pixels */
+	public void draw(Graphics g, int offsetX, int offsetY, int scale)
+	{
+		if (scale != this.scale)
+		{
+			chunks.clear();
+			this.scale = scale;
+			chunkTiles = Math.max(1, CHUNK_PIXELS / scale);
+			chunksWide = (board.getGridWidth() + chunkTiles - 1) / chunkTiles;
+		}
+		removeChangedChunks();
+
+		// Only the chunks that can be seen are drawn
+		int chunkPixels = chunkTiles * scale;
+		int chunksHigh = (board.getGridHeight() + chunkTiles - 1) / chunkTiles;
+		int firstX = 0;
+		int firstY = 0;
+		int lastX = chunksWide - 1;
+		int lastY = chunksHigh - 1;
+		Rectangle clip = g.getClipBounds();
+		if (clip != null)
+		{
+			firstX = Math.max(firstX,
+					Math.floorDiv(clip.x - offsetX, chunkPixels));
+			firstY = Math.max(firstY,
+					Math.floorDiv(clip.y - offsetY, chunkPixels));
+			lastX = Math.min(lastX, Math.floorDiv(clip.x + clip.width - 1
+					- offsetX, chunkPixels));
+			lastY = Math.min(lastY, Math.floorDiv(clip.y + clip.height - 1
+					- offsetY, chunkPixels));
+		}
+
+		// Every chunk on the screen needs to fit in the cache at once
+		int visible = Math.max(0, lastX - firstX + 1)
+				* Math.max(0, lastY - firstY + 1);
+		if (visible > capacity)
+			capacity = visible;
+
+		for (int chunkY = firstY; chunkY <= lastY; chunkY++)
+			for (int chunkX = firstX; chunkX <= lastX; chunkX++)
+			{
+				Integer key = chunkY * chunksWide + chunkX;
+				BufferedImage chunk = chunks.get(key);
+				if (chunk == null)
+				{
+					chunk = render(g, chunkX, chunkY);
+					chunks.put(key, chunk);
+				}
+				g.drawImage(chunk, offsetX + chunkX * chunkPixels, offsetY
+						+ chunkY * chunkPixels, null);
+			}
+	}
+
+	/** Removes every chunk so that they are all drawn again */
+	public void clear()
+	{
+		chunks.clear();
+	}
+
+	/** Gets the number of chunks that have been drawn from their tiles
+	 *
+	 * @return the number of chunks drawn */
+	public int getChunksRendered()
+	{
+		return chunksRendered;
+	}
+
+	/** Removes the chunks holding any tile that changed since the chunks were
+	 * drawn */
+	private void removeChangedChunks()
+	{
+		Rectangle changed = board.getTerrainChanges(terrainVersion);
+		terrainVersion = board.getTerrainVersion();
+		if (changed == null)
+			return;
+
+		int firstX = changed.x / chunkTiles;
+		int firstY = changed.y / chunkTiles;
+		int lastX = (changed.x + changed.width - 1) / chunkTiles;
+		int lastY = (changed.y + changed.height - 1) / chunkTiles;
+		Iterator<Integer> keys = chunks.keySet().iterator();
+		while (keys.hasNext())
+		{
+			int key = keys.next();
+			int chunkX = key % chunksWide;
+			int chunkY = key / chunksWide;
+			if (chunkX >= firstX && chunkX <= lastX && chunkY >= firstY
+					&& chunkY <= lastY)
+				keys.remove();
+		}
+	}
+
+	/** Draws the tiles of a chunk into a new image
+	 *
+	 * @param g the graphics the chunk will be drawn with, whose device and
+	 *            rendering hints the image is made to match
+	 * @param chunkX the column of the chunk
+	 * @param chunkY the row of the chunk
+	 * @return the image of the chunk */
+	private BufferedImage render(Graphics g, int chunkX, int chunkY)
+	{
+		int startX = chunkX * chunkTiles;
+		int startY = chunkY * chunkTiles;
+		int endX = Math.min(startX + chunkTiles, board.getGridWidth());
+		int endY = Math.min(startY + chunkTiles, board.getGridHeight());
+		int width = (endX - startX) * scale;
+		int height = (endY - startY) * scale;
+
+		BufferedImage chunk;
+		Graphics2D chunkGraphics;
+		if (g instanceof Graphics2D)
+		{
+			// An image in the same format as the screen can be drawn to it
+			// without being converted first
+			GraphicsConfiguration config = ((Graphics2D) g)
+					.getDeviceConfiguration();
+			chunk = config.createCompatibleImage(width, height,
+					Transparency.BITMASK);
+			chunkGraphics = chunk.createGraphics();
+			chunkGraphics.setRenderingHints(((Graphics2D) g)
+					.getRenderingHints());
+		} else
+		{
+			chunk = new BufferedImage(width, height,
+					BufferedImage.TYPE_INT_ARGB);
+			chunkGraphics = chunk.createGraphics();
+		}
+
+		for (int y = startY; y < endY; y++)
+			for (int x = startX; x < endX; x++)
+				board.getTileType(x, y).getSprite().draw(chunkGraphics,
+						(x - startX) * scale, (y - startY) * scale, scale,
+						scale, null);
+		chunkGraphics.dispose();
+		chunksRendered++;
+		return chunk;
+	}
+
+}
@@ -0,0 +1,354 @@
+package Board;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import Game.Player;
+
+/** Every location on a board that the enemies of a player could attack on
+ * their next turn, found by moving each enemy as far as it can and spreading
+ * its attack range from every location it can reach. Each location knows how
+ * many enemies threaten it and the strongest attack among them.
+ *
+ * When the board changes only the enemies whose movement could be affected by
+ * the change are worked out again, so a single unit moving only costs a few
+ * enemies being recalculated.
+ *
+ * @author Shiranka Miskin
+ * @version January 2013 */
+public class ThreatMap
+{
+
+	private static final int PAGE_SIZE = 4096;
+
+	private Board board;
+	private Player player;
+
+	// The number of enemies threatening each cell and the strongest of their
+	// attacks, split into pages that are only created once they are needed
+	private int[][] counts;
+	private int[][] maxAttacks;
+	private CellSet threatened;
+
+	private ArrayList<Threat> threats;
+	private Map<Unit, Threat> threatsByUnit;
+	private boolean computed;
+	private int terrainVersion;
+	private int occupancyVersion;
+
+	// Reused while working out each enemy's threat
+	private ReachabilityMap reach;
+	private RangeTemplate.Clip clip;
+	private CellSet maxChanged;
+
+	private int threatsComputed;
+
+	/** The cells threatened by a single enemy, along with everything they
+	 * were worked out from */
+	private static class Threat
+	{
+		private Unit unit;
+		private int x;
+		private int y;
+		private int moveRange;
+		private RangeTemplate range;
+		private int attack;
+		// The cells whose changes could change where the unit can move
+		private Rectangle window;
+		private CellSet cells;
+	}
+
+	/** Creates a threat map of the enemies of a player
+	 *
+	 * @param board the board the units are on
+	 * @param player the player who is threatened */
+	public ThreatMap(Board board, Player player)
+	{
+		this.board = board;
+		this.player = player;
+		int numCells = board.getNumCells();
+		counts = new int[(numCells + PAGE_SIZE - 1) / PAGE_SIZE][];
+		maxAttacks = new int[counts.length][];
+		threatened = new CellSet(numCells);
+		threats = new ArrayList<Threat>();
+		threatsByUnit = new HashMap<Unit, Threat>();
+		reach = new ReachabilityMap();
+		clip = new RangeTemplate.Clip();
+		maxChanged = new CellSet(numCells);
+	}
+
+	/** Brings the map up to date with the board, working out the threat of
+	 * only the enemies that were added, changed or could move differently
+	 * since the last update */
+	public void update()
+	{
+		int newTerrainVersion = board.getTerrainVersion();
+		int newOccupancyVersion = board.getOccupancyVersion();
+		Rectangle dirty = null;
+		if (computed)
+		{
+			dirty = board.getTerrainChanges(terrainVersion);
+			Rectangle occupancyDirty = board
+					.getOccupancyChanges(occupancyVersion);
+			if (dirty == null)
+				dirty = occupancyDirty;
+			else if (occupancyDirty != null)
+				dirty = dirty.union(occupancyDirty);
+		}
+		boolean changed = false;
+
+		// Enemies that have left the board no longer threaten anything
+		for (int i = threats.size() - 1; i >= 0; i--)
+		{
+			Threat threat = threats.get(i);
+			if (board.getUnitPos(threat.unit) == null)
+			{
+				remove(threat);
+				threats.remove(i);
+				threatsByUnit.remove(threat.unit);
+				changed = true;
+			}
+		}
+
+		for (Unit unit : board.getUnits())
+		{
+			if (player.hasUnit(unit))
+				continue;
+			Threat threat = threatsByUnit.get(unit);
+			if (threat == null)
+			{
+				threat = new Threat();
+				threat.unit = unit;
+				threat.cells = new CellSet(board.getNumCells());
+				threats.add(threat);
+				threatsByUnit.put(unit, threat);
+			} else if (computed && !hasChanged(threat)
+					&& (dirty == null || !dirty.intersects(threat.window)))
+				continue;
+			else
+				remove(threat);
+			compute(threat);
+			add(threat);
+			changed = true;
+		}
+
+		// The strongest attack on a cell is found again wherever the strongest
+		// threat was taken away
+		for (int i = 0; i < maxChanged.size(); i++)
+		{
+			int cell = maxChanged.get(i);
+			int maxAttack = 0;
+			for (Threat threat : threats)
+				if (threat.attack > maxAttack && threat.cells.contains(cell))
+					maxAttack = threat.attack;
+			setMaxAttack(cell, maxAttack);
+		}
+		maxChanged.clear();
+
+		if (changed)
+		{
+			threatened.clear();
+			for (Threat threat : threats)
+				for (int i = 0; i < threat.cells.size(); i++)
+				{
+					int cell = threat.cells.get(i);
+					if (getThreatCount(cell) > 0)
+						threatened.add(cell);
+				}
+		}
+
+		computed = true;
+		terrainVersion = newTerrainVersion;
+		occupancyVersion = newOccupancyVersion;
+	}
+
+	/** Gets the number of enemies that could attack a location
+	 *
+	 * @param x the x coordinate of the location
+	 * @param y the y coordinate of the location
+	 * @return the number of enemies threatening it */
+	public int getThreatCount(int x, int y)
+	{
+		return getThreatCount(y * board.getGridWidth() + x);
+	}
+
+	/** Gets the number of enemies that could attack a cell
+	 *
+	 * @param cell the cell index
+	 * @return the number of enemies threatening it */
+	public int getThreatCount(int cell)
+	{
+		int[] page = counts[cell / PAGE_SIZE];
+		return page == null ? 0 : page[cell % PAGE_SIZE];
+	}
+
+	/** Gets the strongest attack of the enemies that could attack a cell
+	 *
+	 * @param cell the cell index
+	 * @return the highest attack stat, or 0 if the cell is not threatened */
+	public int getMaxAttack(int cell)
+	{
+		int[] page = maxAttacks[cell / PAGE_SIZE];
+		return page == null ? 0 : page[cell % PAGE_SIZE];
+	}
+
+	/** Determines if any enemy could attack a location
+	 *
+	 * @param x the x coordinate of the location
+	 * @param y the y coordinate of the location
+	 * @return true if the location is threatened, false if not */
+	public boolean isThreatened(int x, int y)
+	{
+		return getThreatCount(x, y) > 0;
+	}
+
+	/** Gets the number of threatened cells
+	 *
+	 * @return the number of cells */
+	public int size()
+	{
+		return threatened.size();
+	}
+
+	/** Gets one of the threatened cells
+	 *
+	 * @param i the index of the cell, below size()
+	 * @return the cell index */
+	public int getCell(int i)
+	{
+		return threatened.get(i);
+	}
+
+	/** Gets the player whose enemies are shown
+	 *
+	 * @return the player */
+	public Player getPlayer()
+	{
+		return player;
+	}
+
+	/** Gets the number of times an enemy's threat has been worked out
+	 *
+	 * @return the number of threats computed */
+	public int getThreatsComputed()
+	{
+		return threatsComputed;
+	}
+
+	/** Determines if an enemy has moved or changed its stats since its threat
+	 * was worked out
+	 *
+	 * @param threat the enemy's threat
+	 * @return true if the threat needs to be worked out again */
+	private boolean hasChanged(Threat threat)
+	{
+		Unit unit = threat.unit;
+		Point pos = board.getUnitPos(unit);
+		return pos.x != threat.x || pos.y != threat.y
+				|| unit.getMoveRange() != threat.moveRange
+				|| unit.getAttack().getRange() != threat.range
+				|| unit.getCurrentStats().getAttack() != threat.attack;
+	}
+
+	/** Works out every cell an enemy could attack after moving
+	 *
+	 * @param threat the enemy's threat */
+	private void compute(Threat threat)
+	{
+		Unit unit = threat.unit;
+		Point pos = board.getUnitPos(unit);
+		threat.x = pos.x;
+		threat.y = pos.y;
+		threat.moveRange = unit.getMoveRange();
+		threat.range = unit.getAttack().getRange();
+		threat.attack = unit.getCurrentStats().getAttack();
+		int radius = Math.max(threat.moveRange - 1, 0);
+		threat.window = new Rectangle(pos.x - radius, pos.y - radius,
+				radius * 2 + 1, radius * 2 + 1);
+
+		// The enemy can attack from where it stands as well as from anywhere
+		// it can move to
+		threat.cells.clear();
+		addAttackCells(threat, pos.x, pos.y);
+		reach.compute(board, pos.x, pos.y, threat.moveRange);
+		for (int i = 0; i < reach.size(); i++)
+		{
+			int cell = reach.getCell(i);
+			addAttackCells(threat, board.getCellX(cell), board.getCellY(cell));
+		}
+		threatsComputed++;
+	}
+
+	/** Adds the cells an enemy could attack from a location to its threat
+	 *
+	 * @param threat the enemy's threat
+	 * @param x the x coordinate the enemy attacks from
+	 * @param y the y coordinate the enemy attacks from */
+	private void addAttackCells(Threat threat, int x, int y)
+	{
+		clip.start(threat.range, x, y, board.getGridWidth(),
+				board.getGridHeight());
+		while (clip.next())
+			threat.cells.add(clip.getCell());
+	}
+
+	/** Adds an enemy's threat to the counts of the cells it threatens
+	 *
+	 * @param threat the enemy's threat */
+	private void add(Threat threat)
+	{
+		for (int i = 0; i < threat.cells.size(); i++)
+		{
+			int cell = threat.cells.get(i);
+			int[] countPage = getPage(counts, cell);
+			countPage[cell % PAGE_SIZE]++;
+			int[] maxPage = getPage(maxAttacks, cell);
+			if (threat.attack > maxPage[cell % PAGE_SIZE])
+				maxPage[cell % PAGE_SIZE] = threat.attack;
+		}
+	}
+
+	/** Takes an enemy's threat away from the cells it threatened
+	 *
+	 * @param threat the enemy's threat */
+	private void remove(Threat threat)
+	{
+		for (int i = 0; i < threat.cells.size(); i++)
+		{
+			int cell = threat.cells.get(i);
+			counts[cell / PAGE_SIZE][cell % PAGE_SIZE]--;
+			if (getMaxAttack(cell) <= threat.attack)
+				maxChanged.add(cell);
+		}
+		threat.cells.clear();
+	}
+
+	/** Sets the strongest attack on a cell
+	 *
+	 * @param cell the cell index
+	 * @param maxAttack the highest attack stat */
+	private void setMaxAttack(int cell, int maxAttack)
+	{
+		getPage(maxAttacks, cell)[cell % PAGE_SIZE] = maxAttack;
+	}
+
+	/** Gets the page of an array holding a cell, creating it if necessary
+	 *
+	 * @param pages the pages of the array
+	 * @param cell the cell index
+	 * @return the page */
+	private static int[] getPage(int[][] pages, int cell)
+	{
+		int[] page = pages[cell / PAGE_SIZE];
+		if (page == null)
+		{
+			page = new int[PAGE_SIZE];
+			pages[cell / PAGE_SIZE] = page;
+		}
+		return page;
+	}
+
+}
@@ -0,0 +1,379 @@
+package Board;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+/** Pictures of whole boards, drawn once on a background thread so that a
+ * board can be previewed by drawing a single image. Each picture is saved as a
+ * PNG named after the hash of its board's file, so it is only drawn again when
+ * the board changes.
+ *
+ * @author Shiranka Miskin
+ * @version January 2013 */
+public class ThumbnailCache
+{
+
+	public static final String DEFAULT_CACHE_FOLDER = "res/cache/thumbnails/";
+	public static final int DEFAULT_CAPACITY = 32;
+
+	private File folder;
+	private Dimension maxSize;
+	private int capacity;
+	private LinkedHashMap<String, BufferedImage> thumbnails;
+
+	// Boards waiting to be drawn, with the newest request first
+	private LinkedList<BoardCatalog.Entry> queue;
+	private HashSet<String> queued;
+	// Boards whose thumbnails could not be made, which are not tried again
+	// until their files change and so their keys do
+	private HashSet<String> failed;
+	private Thread thread;
+
+	private int thumbnailsRendered;
+	private int thumbnailsRead;
+
+	/** Creates a cache of thumbnails saved in the default folder
+	 *
+	 * @param maxSize the largest size a thumbnail can be */
+	public ThumbnailCache(Dimension maxSize)
+	{
+		this(new File(DEFAULT_CACHE_FOLDER), maxSize, DEFAULT_CAPACITY);
+	}
+
+	/** Creates a cache of thumbnails
+	 *
+	 * @param folder the folder the thumbnails are saved in
+	 * @param maxSize the largest size a thumbnail can be
+	 * @param capacity the most thumbnails to keep in memory */
+	public ThumbnailCache(File folder, Dimension maxSize, int capacity)
+	{
+		this.folder = folder;
+		this.maxSize = new Dimension(maxSize);
+		this.capacity = capacity;
+		queue = new LinkedList<BoardCatalog.Entry>();
+		queued = new HashSet<String>();
+		failed = new HashSet<String>();
+
+		// Ordered by access so the least recently used thumbnail is removed
+		// first
+		thumbnails = new LinkedHashMap<String, BufferedImage>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(
+					Map.Entry<String, BufferedImage> eldest)
+			{
+				return size() > ThumbnailCache.this.capacity;
+			}
+		};
+	}
+
+	/** Gets the thumbnail of a board, asking for it to be drawn if it is not
+	 * ready yet
+	 *
+	 * @param entry the catalog entry of the board
+	 * @return the thumbnail, or null if it is not ready yet or could not be
+	 *         made */
+	public synchronized BufferedImage get(BoardCatalog.Entry entry)
+	{
+		String key = getKey(entry);
+		BufferedImage thumbnail = thumbnails.get(key);
+		if (thumbnail == null && !failed.contains(key))
+			request(entry, key);
+		return thumbnail;
+	}
+
+	/** Asks for the thumbnail of a board to be made ready ahead of time
+	 *
+	 * @param entry the catalog entry of the board */
+	public synchronized void prefetch(BoardCatalog.Entry entry)
+	{
+		String key = getKey(entry);
+		if (!thumbnails.containsKey(key) && !failed.contains(key))
+			request(entry, key);
+	}
+
+	/** Gets the number of thumbnails that were drawn from their boards
+	 *
+	 * @return the number of thumbnails drawn */
+	public synchronized int getThumbnailsRendered()
+	{
+		return thumbnailsRendered;
+	}
+
+	/** Gets the number of thumbnails that were read from saved images
+	 *
+	 * @return the number of thumbnails read */
+	public synchronized int getThumbnailsRead()
+	{
+		return thumbnailsRead;
+	}
+
+	/** Gets the size of the thumbnail of a board, with each tile drawn at the
+	 * largest whole number of pixels that fits
+	 *
+	 * @param width the width of the board
+	 * @param height the height of the board
+	 * @param maxSize the largest size the thumbnail can be
+	 * @return the size of the thumbnail */
+	public static Dimension getThumbnailSize(int width, int height,
+			Dimension maxSize)
+	{
+		int scale = Math.min(maxSize.width / width, maxSize.height / height);
+		if (scale >= 1)
+			return new Dimension(width * scale, height * scale);
+
+		// Boards with more tiles than pixels are shrunk to fit
+		double shrink = Math.min((double) maxSize.width / width,
+				(double) maxSize.height / height);
+		return new Dimension(Math.max(1, (int) (width * shrink)), Math.max(1,
+				(int) (height * shrink)));
+	}
+
+	/** Adds a board to the front of the queue to be drawn
+	 *
+	 * @param entry the catalog entry of the board
+	 * @param key the key of its thumbnail */
+	private void request(BoardCatalog.Entry entry, String key)
+	{
+		if (queued.contains(key))
+		{
+			// Moves the board to the front, as it was asked for most recently
+			for (BoardCatalog.Entry other : queue)
+				if (getKey(other).equals(key))
+				{
+					queue.remove(other);
+					break;
+				}
+		}
+		queue.addFirst(entry);
+		queued.add(key);
+
+		if (thread == null)
+		{
+			thread = new Thread(new Runnable()
+			{
+				public void run()
+				{
+					makeThumbnails();
+				}
+			}, "Thumbnail renderer");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			thread.start();
+		}
+		notifyAll();
+	}
+
+	/** Makes the thumbnails that are asked for, for as long as the game runs */
+	private void makeThumbnails()
+	{
+		while (true)
+		{
+			BoardCatalog.Entry entry;
+			synchronized (this)
+			{
+				while (queue.isEmpty())
+				{
+					try
+					{
+						wait();
+					} catch (InterruptedException e)
+					{
+						return;
+					}
+				}
+				entry = queue.getFirst();
+			}
+
+			String key = getKey(entry);
+			File file = new File(folder, key + ".png");
+			BufferedImage thumbnail = null;
+			boolean rendered = false;
+			try
+			{
+				if (file.isFile())
+					thumbnail = ImageIO.read(file);
+			} catch (IOException e)
+			{
+				// A damaged thumbnail is drawn again
+			} catch (RuntimeException e)
+			{
+				// So is one the image reader cannot make sense of
+			}
+			if (thumbnail == null)
+			{
+				try
+				{
+					BoardFile contents = BoardFile.load(entry.getFile());
+					try
+					{
+						thumbnail = render(contents);
+					} finally
+					{
+						contents.getTerrain().close();
+					}
+					rendered = true;
+					save(thumbnail, file);
+				} catch (IOException e)
+				{
+					e.printStackTrace();
+				} catch (RuntimeException e)
+				{
+					// A board that cannot be drawn must not stop the
+					// thumbnails of every other board being made
+					e.printStackTrace();
+				}
+			}
+
+			synchronized (this)
+			{
+				queue.remove(entry);
+				queued.remove(key);
+				if (thumbnail == null)
+					failed.add(key);
+				else
+				{
+					thumbnails.put(key, thumbnail);
+					if (rendered)
+						thumbnailsRendered++;
+					else
+						thumbnailsRead++;
+				}
+			}
+		}
+	}
+
+	/** Draws the tiles of a board into a thumbnail
+	 *
+	 * @param contents the contents of the board
+	 * @return the thumbnail */
+	private BufferedImage render(BoardFile contents)
+	{
+		int width = contents.getSize().width;
+		int height = contents.getSize().height;
+		Terrain terrain = contents.getTerrain();
+		Dimension size = getThumbnailSize(width, height, maxSize);
+		BufferedImage thumbnail = new BufferedImage(size.width, size.height,
+				BufferedImage.TYPE_INT_RGB);
+
+		int scale = size.width / width;
+		if (scale >= 1)
+		{
+			Graphics2D g = thumbnail.createGraphics();
+			for (int y = 0; y < height; y++)
+				for (int x = 0; x < width; x++)
+				{
+					Image image = getImage(terrain.getType(y * width + x));
+					if (image != null)
+						g.drawImage(image, x * scale, y * scale, scale, scale,
+								null);
+				}
+			g.dispose();
+			return thumbnail;
+		}
+
+		// Each pixel is given the color of the tile under its center, so that
+		// only one tile is read for each pixel however big the board is
+		Map<Integer, Integer> colors = new HashMap<Integer, Integer>();
+		for (int py = 0; py < size.height; py++)
+		{
+			int y = (int) ((py + 0.5) * height / size.height);
+			for (int px = 0; px < size.width; px++)
+			{
+				int x = (int) ((px + 0.5) * width / size.width);
+				int type = terrain.getType(y * width + x);
+				Integer color = colors.get(type);
+				if (color == null)
+				{
+					color = getColor(type);
+					colors.put(type, color);
+				}
+				thumbnail.setRGB(px, py, color);
+			}
+		}
+		return thumbnail;
+	}
+
+	/** Gets the image drawn for a type of tile
+	 *
+	 * @param type the id of the tile type
+	 * @return the image, or null if the type has no sprite */
+	private static Image getImage(int type)
+	{
+		Sprite sprite = TileType.get(type).getSprite();
+		if (sprite == null)
+			return null;
+		return sprite.getImage();
+	}
+
+	/** Gets the average color of the image drawn for a type of tile
+	 *
+	 * @param type the id of the tile type
+	 * @return the color as an RGB value */
+	private static int getColor(int type)
+	{
+		Image image = getImage(type);
+		if (image == null)
+			return 0;
+		BufferedImage pixel = new BufferedImage(1, 1,
+				BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = pixel.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_RENDERING,
+				RenderingHints.VALUE_RENDER_QUALITY);
+		g.drawImage(image.getScaledInstance(1, 1, Image.SCALE_AREA_AVERAGING),
+				0, 0, null);
+		g.dispose();
+		return pixel.getRGB(0, 0);
+	}
+
+	/** Saves a thumbnail so that it does not need to be drawn next time
+	 *
+	 * @param thumbnail the thumbnail
+	 * @param file the .png file to save to */
+	private static void save(final BufferedImage thumbnail, File file)
+	{
+		try
+		{
+			File parent = file.getAbsoluteFile().getParentFile();
+			if (!parent.isDirectory())
+				parent.mkdirs();
+			new BoardFile.FileReplacer()
+			{
+				protected void write(File tempFile) throws IOException
+				{
+					if (!ImageIO.write(thumbnail, "png", tempFile))
+						throw new IOException("No writer for png images");
+				}
+			}.replace(file);
+		} catch (IOException e)
+		{
+			// The thumbnail only speeds up previewing, so it can still be
+			// used without saving it
+		}
+	}
+
+	/** Gets the key of the thumbnail of a board, which changes when the board
+	 * or the size of the thumbnails does
+	 *
+	 * @param entry the catalog entry of the board
+	 * @return the key */
+	private String getKey(BoardCatalog.Entry entry)
+	{
+		return Long.toHexString(entry.getHash()) + "_" + maxSize.width + "x"
+				+ maxSize.height;
+	}
+
+}
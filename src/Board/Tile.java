@@ -9,16 +9,20 @@ import java.util.HashMap;
 import java.util.Map;
 
 /** A Tile object, with an image to display, the cost to traverse it, and its
- * name
+ * name. A tile returned by a board is a view of one of its locations, so
+ * reading or changing it reads or changes the board itself.
  * 
  * @author Shiranka Miskin
  * @version January 2013 */
 public class Tile
 {
 
-	private String tileName;
-	private Sprite sprite;
+	private TileType type;
 	private int cost;
+	// The board location this tile is a view of, if any
+	private Board board;
+	private int boardX;
+	private int boardY;
 	public static Map<String, Sprite> tileSprites = new HashMap<String, Sprite>();
 	public static Map<String, Sprite> UITiles = new HashMap<String, Sprite>();
 	public static Map<String, Integer> defaultCosts = new HashMap<String, Integer>();
@@ -32,10 +36,7 @@ public class Tile
 	 * @param tileName the name of the tile */
 	public Tile(String tileName)
 	{
-		this.tileName = tileName;
-		sprite = tileSprites.get(tileName);
-		if (sprite == null)
-			sprite = UITiles.get(tileName);
+		type = TileType.get(tileName);
 		cost = 1;
 	}
 
@@ -54,9 +55,20 @@ public class Tile
 	 * @param selectedTile the tile to copy */
 	public Tile(Tile selectedTile)
 	{
-		tileName = selectedTile.tileName;
-		sprite = selectedTile.sprite;
-		cost = selectedTile.cost;
+		type = selectedTile.getType();
+		cost = selectedTile.getCost();
+	}
+
+	/** Creates a view of a location on a board
+	 * 
+	 * @param board the board the tile is on
+	 * @param x the x coordinate of the tile
+	 * @param y the y coordinate of the tile */
+	Tile(Board board, int x, int y)
+	{
+		this.board = board;
+		boardX = x;
+		boardY = y;
 	}
 
 
@@ -109,6 +121,16 @@ public class Tile
 		defaultCosts.put("plains", 2);
 		defaultCosts.put("rocks", 4);
 
+		// Shares the sprite and default cost of each type between its tiles
+		for (Map.Entry<String, Sprite> entry : UITiles.entrySet())
+			TileType.register(entry.getKey(), entry.getValue(), 1);
+		for (Map.Entry<String, Sprite> entry : tileSprites.entrySet())
+		{
+			Integer cost = defaultCosts.get(entry.getKey());
+			TileType.register(entry.getKey(), entry.getValue(),
+					cost == null ? 1 : cost);
+		}
+
 		System.out.println("Tiles: " + tileSprites.keySet());
 		System.out.println("UI Tiles: " + UITiles.keySet());
 	}
@@ -118,13 +140,16 @@ public class Tile
 	 * @param newCost the new cost */
 	public void setCost(int newCost)
 	{
-		cost = newCost;
+		if (board != null)
+			board.setCost(boardX, boardY, newCost);
+		else
+			cost = newCost;
 	}
 
 	/** Sets the current tile to be unwalkable */
 	public void setUnwalkable()
 	{
-		cost = Board.MAX_TILE_COST;
+		setCost(Board.MAX_TILE_COST);
 	}
 
 
@@ -134,9 +159,9 @@ public class Tile
 	 * @return The updated cost of movement */
 	public int changeCost(int changeInCost)
 	{
-		if (cost < Integer.MAX_VALUE)
-			cost += changeInCost;
-		return cost;
+		if (getCost() < Integer.MAX_VALUE)
+			setCost(getCost() + changeInCost);
+		return getCost();
 	}
 
 	/** Gets the current cost to tarverse this tile
@@ -144,15 +169,27 @@ public class Tile
 	 * @return the cost of the tile */
 	public int getCost()
 	{
+		if (board != null)
+			return board.getCost(boardX, boardY);
 		return cost;
 	}
 
+	/** Gets the type of the tile
+	 * 
+	 * @return the type of the tile */
+	public TileType getType()
+	{
+		if (board != null)
+			return board.getTileType(boardX, boardY);
+		return type;
+	}
+
 	/** Gets the name of the tile
 	 * 
 	 * @return the name of the tile */
 	public String getName()
 	{
-		return tileName;
+		return getType().getName();
 	}
 
 	/** Returns the name of the tile as its string representation
@@ -160,7 +197,7 @@ public class Tile
 	 * @return the name of the tile */
 	public String toString()
 	{
-		return tileName;
+		return getName();
 	}
 
 	/** Draws the tile at a specified location
@@ -172,7 +209,7 @@ public class Tile
 	 * @param container The container to draw on */
 	public void draw(Graphics g, int x, int y, int scale, Container container)
 	{
-		sprite.draw(g, x, y, scale, scale, container);
+		getType().getSprite().draw(g, x, y, scale, scale, container);
 
 	}
 
@@ -0,0 +1,132 @@
+package Board;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/** A type of tile, such as grass or water, holding everything that is shared
+ * by every tile of that type. Each type is given a small id so that a board
+ * can store its terrain as an array of ids instead of an object per location.
+ *
+ * @author Shiranka Miskin
+ * @version January 2013 */
+public class TileType
+{
+
+	// Ids are stored in a byte on the board
+	public static final int MAX_TYPES = 256;
+
+	private static ArrayList<TileType> types = new ArrayList<TileType>();
+	private static Map<String, TileType> typesByName = new HashMap<String, TileType>();
+	// A copy of the types made every time one is added, so that they can be
+	// looked up by id on any thread without waiting for a lock
+	private static volatile TileType[] typesById = new TileType[0];
+
+	private int id;
+	private String name;
+	private Sprite sprite;
+	private int defaultCost;
+
+	/** Creates a tile type
+	 *
+	 * @param id the id of the type
+	 * @param name the name of the type */
+	private TileType(int id, String name)
+	{
+		this.id = id;
+		this.name = name;
+		defaultCost = 1;
+	}
+
+	/** Gets the type of tile with a name, creating it if it does not exist yet.
+	 * Boards can be loaded on other threads, so new types are added one at a
+	 * time
+	 *
+	 * @param name the name of the type
+	 * @return the tile type */
+	public static synchronized TileType get(String name)
+	{
+		TileType type = typesByName.get(name);
+		if (type == null)
+		{
+			if (types.size() == MAX_TYPES)
+				throw new IllegalStateException("Too many tile types to add "
+						+ name);
+			type = new TileType(types.size(), name);
+			types.add(type);
+			typesByName.put(name, type);
+			typesById = types.toArray(new TileType[types.size()]);
+		}
+		return type;
+	}
+
+	/** Gets the type of tile with an id
+	 *
+	 * @param id the id of the type
+	 * @return the tile type */
+	public static TileType get(int id)
+	{
+		return typesById[id];
+	}
+
+	/** Sets the sprite and default cost of a type of tile
+	 *
+	 * @param name the name of the type
+	 * @param sprite the sprite drawn for the type
+	 * @param defaultCost the cost given to new tiles of the type */
+	public static synchronized void register(String name, Sprite sprite,
+			int defaultCost)
+	{
+		TileType type = get(name);
+		type.sprite = sprite;
+		type.defaultCost = defaultCost;
+	}
+
+	/** Gets the id of the type
+	 *
+	 * @return the id */
+	public int getId()
+	{
+		return id;
+	}
+
+	/** Gets the name of the type
+	 *
+	 * @return the name */
+	public String getName()
+	{
+		return name;
+	}
+
+	/** Gets the sprite drawn for tiles of this type
+	 *
+	 * @return the sprite, or null if there is none */
+	public Sprite getSprite()
+	{
+		// Types used before the sprites were loaded look them up later
+		if (sprite == null)
+		{
+			sprite = Tile.tileSprites.get(name);
+			if (sprite == null)
+				sprite = Tile.UITiles.get(name);
+		}
+		return sprite;
+	}
+
+	/** Gets the cost given to new tiles of this type
+	 *
+	 * @return the default cost */
+	public int getDefaultCost()
+	{
+		return defaultCost;
+	}
+
+	/** Returns the name of the type as its string representation
+	 *
+	 * @return the name of the type */
+	public String toString()
+	{
+		return name;
+	}
+
+}
@@ -3,10 +3,12 @@ package Board;
 import java.awt.Color;
 import java.awt.Container;
 import java.awt.Graphics;
+import java.awt.Image;
 import java.awt.Point;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import Board.Action.Type;
 import Board.UnitEntry.Pose;
 import Game.Player;
@@ -36,6 +38,14 @@ public class Unit implements Comparable<Unit>
 	private Sprite currentSprite;
 	private Pose nextPose;
 	private boolean playOnce;
+	// The units playing an animation once, which are only ever a few, so
+	// that a board can finish their animations while they are out of sight
+	private static LinkedHashSet<Unit> playingOnce = new LinkedHashSet<Unit>();
+	// The width the unit was last drawn at, along with the image and scale
+	// it was worked out for
+	private Image sizedImage;
+	private int sizedScale;
+	private int sizedWidth;
 
 
 	/** Creates a unit with its controlling player and its type
@@ -119,7 +129,7 @@ public class Unit implements Comparable<Unit>
 		currentSprite.playOnce();
 		nextPose = next;
 		playOnce = true;
-
+		playingOnce.add(this);
 	}
 
 	/** Determines if the unit has finished animating
@@ -239,6 +249,13 @@ public class Unit implements Comparable<Unit>
 		return currentStats.getMovement();
 	}
 
+	/** Gets the player that owns the unit
+	 * @return the unit's owner */
+	public Player getPlayer()
+	{
+		return player;
+	}
+
 	/** Gets the base stats of the unit
 	 * @return the base stats of the unit */
 	public StatSet getBaseStats()
@@ -298,19 +315,49 @@ public class Unit implements Comparable<Unit>
 			g.drawRect(x + border, y + border, scale - 2 * border, scale - 2
 					* border);
 
-		int height = currentSprite.getImage().getHeight(container);
-		int width = currentSprite.getImage().getWidth(container);
-		width = (int) (scale * (1.0 * width / height));
+		// The width keeps the image's proportions, and only changes along
+		// with the scale or the image
+		Image image = currentSprite.getImage();
+		if (image != sizedImage || scale != sizedScale)
+		{
+			sizedImage = image;
+			sizedScale = scale;
+			sizedWidth = (int) (scale * (1.0 * image.getWidth(container) / image
+					.getHeight(container)));
+		}
+		int width = sizedWidth;
 		// Center the unit
 		x = x - (width / 2 - scale / 2);
 		currentSprite.draw(g, x, y, width, scale, container);
+		checkAnimationDone();
+	}
 
+	/** Advances the unit's animation without drawing it, so that a unit out of
+	 * sight still finishes an animation it was told to play once */
+	public void animate()
+	{
+		currentSprite.update();
+		checkAnimationDone();
+	}
+
+	/** Gets the units that are playing an animation once, copied so that
+	 * animating them can finish their animations
+	 * 
+	 * @return the units */
+	static ArrayList<Unit> getPlayingOnce()
+	{
+		return new ArrayList<Unit>(playingOnce);
+	}
+
+	/** Moves on to the next pose once an animation played once is complete */
+	private void checkAnimationDone()
+	{
 		if (playOnce && currentSprite.isComplete())
 		{
 			playOnce = false;
+			playingOnce.remove(this);
 			setPose(nextPose);
 		}
-
 	}
 
 	/** Draws the unit's current sprite
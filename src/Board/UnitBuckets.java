@@ -0,0 +1,128 @@
+package Board;
+
+import java.util.Arrays;
+
+/** The ids of the units on a board, sorted into square buckets of cells by
+ * where they stand. Finding the units near a location only needs to look in
+ * the buckets around it rather than at every unit on the board.
+ *
+ * @author Shiranka Miskin
+ * @version January 2013 */
+public class UnitBuckets
+{
+
+	public static final int BUCKET_SIZE = 8;
+
+	private int bucketsWide;
+	private int bucketsHigh;
+	// The ids in each bucket, created once a unit enters it
+	private int[][] ids;
+	private int[] sizes;
+
+	/** Creates empty buckets covering a board
+	 *
+	 * @param width the width of the board
+	 * @param height the height of the board */
+	public UnitBuckets(int width, int height)
+	{
+		bucketsWide = (width + BUCKET_SIZE - 1) / BUCKET_SIZE;
+		bucketsHigh = (height + BUCKET_SIZE - 1) / BUCKET_SIZE;
+		ids = new int[bucketsWide * bucketsHigh][];
+		sizes = new int[bucketsWide * bucketsHigh];
+	}
+
+	/** Adds a unit standing at a location
+	 *
+	 * @param id the id of the unit
+	 * @param x the x coordinate of the unit
+	 * @param y the y coordinate of the unit */
+	public void add(int id, int x, int y)
+	{
+		int bucket = getBucket(x, y);
+		if (ids[bucket] == null)
+			ids[bucket] = new int[4];
+		else if (sizes[bucket] == ids[bucket].length)
+			ids[bucket] = Arrays.copyOf(ids[bucket], sizes[bucket] * 2);
+		ids[bucket][sizes[bucket]++] = id;
+	}
+
+	/** Removes a unit that was standing at a location
+	 *
+	 * @param id the id of the unit
+	 * @param x the x coordinate the unit was added at
+	 * @param y the y coordinate the unit was added at */
+	public void remove(int id, int x, int y)
+	{
+		int bucket = getBucket(x, y);
+		for (int i = 0; i < sizes[bucket]; i++)
+			if (ids[bucket][i] == id)
+			{
+				// The last id fills the gap, as the order does not matter
+				ids[bucket][i] = ids[bucket][--sizes[bucket]];
+				return;
+			}
+	}
+
+	/** Moves a unit from one location to another
+	 *
+	 * @param id the id of the unit
+	 * @param oldX the x coordinate the unit was at
+	 * @param oldY the y coordinate the unit was at
+	 * @param x the new x coordinate of the unit
+	 * @param y the new y coordinate of the unit */
+	public void move(int id, int oldX, int oldY, int x, int y)
+	{
+		if (getBucket(oldX, oldY) == getBucket(x, y))
+			return;
+		remove(id, oldX, oldY);
+		add(id, x, y);
+	}
+
+	/** Gets the number of buckets across the board
+	 *
+	 * @return the number of columns of buckets */
+	public int getBucketsWide()
+	{
+		return bucketsWide;
+	}
+
+	/** Gets the number of buckets down the board
+	 *
+	 * @return the number of rows of buckets */
+	public int getBucketsHigh()
+	{
+		return bucketsHigh;
+	}
+
+	/** Gets the number of units in a bucket
+	 *
+	 * @param bucketX the column of the bucket
+	 * @param bucketY the row of the bucket
+	 * @return the number of units */
+	public int size(int bucketX, int bucketY)
+	{
+		return sizes[bucketY * bucketsWide + bucketX];
+	}
+
+	/** Gets the id of one of the units in a bucket
+	 *
+	 * @param bucketX the column of the bucket
+	 * @param bucketY the row of the bucket
+	 * @param index the index of the unit in the bucket
+	 * @return the id of the unit */
+	public int get(int bucketX, int bucketY, int index)
+	{
+		return ids[bucketY * bucketsWide + bucketX][index];
+	}
+
+	/** Gets the index of the bucket holding a location
+	 *
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @return the bucket index */
+	private int getBucket(int x, int y)
+	{
+		return (y / BUCKET_SIZE) * bucketsWide + x / BUCKET_SIZE;
+	}
+
+}
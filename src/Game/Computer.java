@@ -2,8 +2,11 @@ package Game;
 
 import java.awt.Color;
 import java.awt.Point;
+import java.util.ArrayList;
 import java.util.Collection;
 import Board.Action;
+import Board.Path;
+import Board.ReachabilityMap;
 import Board.StatSet;
 import Board.Unit;
 
@@ -206,71 +209,123 @@ public class Computer extends Player
 
 		decideMindset();
 
-		Point dest = null;
-		double highestInfluence;
-		switch (currentMindset)
+		// A unit that is attacking does not need to move
+		if (currentMindset == Mindset.ATTACK)
+			return null;
+
+		// If the location on the board is too dangerous, regroup to the
+		// closest location to the unit's allies
+		double attackThreshold = 50;
+		Point pos = board.getUnitPos(selectedUnit);
+		boolean regroup = allyMap[pos.x][pos.y] < attackThreshold;
+
+		// If the unit is far from any danger, head straight for the closest
+		// enemy even if it is more than a turn away
+		if (currentMindset == Mindset.POSITION && !regroup
+				&& enemyMap[pos.x][pos.y] <= 100)
 		{
-		// If the unit is trying to run away, escape to the highest influence
-		// area
-		case SURVIVE:
-			highestInfluence = Integer.MIN_VALUE;
-			for (int x = 0; x < influenceMap.length; x++)
-				for (int y = 0; y < influenceMap[0].length; y++)
-					if (board.isInMovementRange(x, y)
-							&& influenceMap[x][y] > highestInfluence)
-					{
-						dest = new Point(x, y);
-						highestInfluence = influenceMap[x][y];
-					}
+			Point dest = pickPathDest();
+			if (dest != null)
+				return dest;
+		}
 
-			break;
-		case POSITION:
-			double attackThreshold = 50;
-			highestInfluence = Integer.MIN_VALUE;
-			// If the location on the board is too dangerous, regroup to the
-			// closest location to the unit's allies
-			if (allyMap[board.getUnitPos(selectedUnit).x][board
-					.getUnitPos(selectedUnit).y] < attackThreshold)
+		// Only the locations in the movement grid need to be checked. Ties
+		// go to the location with the lowest x coordinate, then the lowest y
+		ReachabilityMap grid = board.getMovementGrid();
+		int destCell = -1;
+		double highestInfluence = Integer.MIN_VALUE;
+		for (int i = 0; i < grid.size(); i++)
+		{
+			int cell = grid.getCell(i);
+			double value = getMoveValue(board.getCellX(cell),
+					board.getCellY(cell), regroup);
+			if (value > highestInfluence
+					|| (value == highestInfluence && destCell != -1 && comesBefore(
+							cell, destCell)))
 			{
-				for (int x = 0; x < allyMap.length; x++)
-					for (int y = 0; y < allyMap[0].length; y++)
-						if (board.isInMovementRange(x, y)
-								&& allyMap[x][y] > highestInfluence)
-						{
-							dest = new Point(x, y);
-							highestInfluence = allyMap[x][y];
-						}
-			} else
-				// Otherwise the unit can move to the attack, therefore travel
-				// towards the enemy by weighing the enemy map more
-				for (int x = 0; x < enemyMap.length; x++)
-					for (int y = 0; y < enemyMap[0].length; y++)
-						if (board.isInMovementRange(x, y))
-						{
-							// If the unit is in a dangerous area, consider
-							// their allies,
-							// otherwise simply head towards the enemy
-							double consideration = 0;
-							if (enemyMap[x][y] > 100)
-								consideration = enemyMap[x][y] * 2
-										+ allyMap[x][y];
-							else
-								consideration = enemyMap[x][y];
-							if (consideration > highestInfluence)
-							{
-								dest = new Point(x, y);
-								highestInfluence = consideration;
-							}
-						}
-
-			break;
-		case ATTACK:
-			break;
+				destCell = cell;
+				highestInfluence = value;
+			}
 		}
 
+		if (destCell == -1)
+			return null;
+		return board.getCellPoint(destCell);
+	}
+
+	/** Plans a path towards the closest enemy and picks the end of the first
+	 * turn of that path
+	 * @return the point to move to, or null if no path could be found */
+	private Point pickPathDest()
+	{
+		Point pos = board.getUnitPos(selectedUnit);
+		Unit closest = null;
+		int closestDistance = Integer.MAX_VALUE;
+		for (Unit unit : board.getUnits())
+		{
+			Point enemyPos = board.getUnitPos(unit);
+			int distance = Math.abs(enemyPos.x - pos.x)
+					+ Math.abs(enemyPos.y - pos.y);
+			if (!hasUnit(unit) && distance < closestDistance)
+			{
+				closest = unit;
+				closestDistance = distance;
+			}
+		}
+		if (closest == null)
+			return null;
+
+		Path path = board.findPath(pos, board.getUnitPos(closest));
+		if (path == null)
+			return null;
+		ArrayList<Path> legs = path.getTurnLegs(selectedUnit.getMoveRange(),
+				board);
+		if (legs.isEmpty())
+			return null;
+
+		Point dest = board.getCellPoint(legs.get(0).getEnd());
+		if (!board.isInMovementRange(dest))
+			return null;
 		return dest;
 	}
 
+	/** Gets how good a location is to move to for the current mindset
+	 * @param x the x coordinate of the location
+	 * @param y the y coordinate of the location
+	 * @param regroup true if the unit should regroup with its allies
+	 * @return how good the location is, with higher values being better */
+	private double getMoveValue(int x, int y, boolean regroup)
+	{
+		// If the unit is trying to run away, escape to the highest influence
+		// area
+		if (currentMindset == Mindset.SURVIVE)
+			return influenceMap[x][y];
+		if (regroup)
+			return allyMap[x][y];
+
+		// Otherwise the unit can move to the attack, therefore travel
+		// towards the enemy by weighing the enemy map more. If the unit is in
+		// a dangerous area, consider their allies, otherwise simply head
+		// towards the enemy
+		if (enemyMap[x][y] > 100)
+			return enemyMap[x][y] * 2 + allyMap[x][y];
+		return enemyMap[x][y];
+	}
+
+	/** Determines if a cell comes before another when ordered by x coordinate
+	 * then by y coordinate
+	 * @param cell the cell to check
+	 * @param other the cell to compare against
+	 * @return true if the cell comes first, false if not */
+	private boolean comesBefore(int cell, int other)
+	{
+		int x = board.getCellX(cell);
+		int otherX = board.getCellX(other);
+		return x < otherX
+				|| (x == otherX && board.getCellY(cell) < board
+						.getCellY(other));
+	}
+
 	/** Picks a target for the selected ability
 	 * @return the target for the ability */
 	public Point pickAbilityTarget()
@@ -8,6 +8,7 @@ import java.awt.Rectangle;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 
@@ -15,6 +16,7 @@ import Board.Action;
 import Board.Action.Type.Target;
 import Board.Board;
 import Board.Sprite;
+import Board.ThreatMap;
 import Board.ActionTooltip;
 import Board.Unit;
 import Board.Action.Type;
@@ -45,6 +47,10 @@ public class Game
 
 	private boolean gameOver;
 
+	// Whether human players are shown where their enemies can attack
+	private boolean showThreats;
+	private HashMap<Player, ThreatMap> threatMaps;
+
 	private int scrollX;
 	private int scrollY;
 
@@ -66,6 +72,7 @@ public class Game
 		players = new LinkedList<Player>();
 		this.screenSize = screenSize;
 		gameOver = false;
+		threatMaps = new HashMap<Player, ThreatMap>();
 	}
 
 
@@ -86,6 +93,15 @@ public class Game
 
 	}
 
+	/** Sets how far the screen is between the last update and the next one,
+	 * so that the board can draw movement partway through a step
+	 * @param progress the fraction of the time between updates that has
+	 *            passed */
+	public void setRenderProgress(double progress)
+	{
+		board.setRenderProgress(progress);
+	}
+
 	/** Returns the board of the game
 	 * @return The board the game is played on */
 	public Board getBoard()
@@ -98,6 +114,16 @@ public class Game
 	{
 		currentPlayer = players.getFirst();
 		currentPlayer.initTurn();
+		precomputeMovement();
+	}
+
+	/** Starts working out the movement grids of the current player's units,
+	 * which is only worth doing for people, since a computer player picks its
+	 * unit straight away and only ever needs that unit's grid */
+	private void precomputeMovement()
+	{
+		if (currentPlayer.isHuman())
+			board.precomputeMovement(currentPlayer.getUnits());
 	}
 
 	/** Changes the state of the game to another state
@@ -113,6 +139,7 @@ public class Game
 			board.clearMovementGrid();
 			board.clearAbilityGrid();
 			setTargeted(null);
+			precomputeMovement();
 			gameState = GameState.UNITSELECT;
 			break;
 
@@ -174,6 +201,7 @@ public class Game
 			currentPlayer = players.getFirst();
 			currentPlayer.initTurn();
 			currentPlayer.resetUnitSelection();
+			precomputeMovement();
 			break;
 
 		case MOVEANIM:
@@ -264,6 +292,7 @@ public class Game
 	public void run()
 	{
 		board.changeOffset(scrollX, scrollY, screenSize);
+		board.update();
 
 		switch (gameState)
 		{
@@ -370,6 +399,9 @@ public class Game
 		if (currentPlayer.getUnits().size() == board.getUnits().size())
 			gameOver = true;
 
+		// Any unit moving takes its next step once the game has seen where it
+		// is, so the game only moves on after the unit's last step is drawn
+		board.step();
 	}
 
 	/** Initializes the tooltip for a certain unit
@@ -399,6 +431,18 @@ public class Game
 	 * @param container the container to draw on */
 	public void draw(Graphics g, Container container)
 	{
+		// Only the human whose turn it is sees the threats against them
+		if (showThreats && currentPlayer.isHuman())
+		{
+			ThreatMap threats = threatMaps.get(currentPlayer);
+			if (threats == null)
+			{
+				threats = new ThreatMap(board, currentPlayer);
+				threatMaps.put(currentPlayer, threats);
+			}
+			board.setThreatOverlay(threats);
+		} else
+			board.setThreatOverlay(null);
 		board.draw(g, container);
 
 		// Draw other UI Elements
@@ -456,6 +500,15 @@ public class Game
 		}
 	}
 
+	/** Handles keyboard input in the game, where T shows or hides every
+	 * location the enemies of the current player could attack next turn
+	 * @param event the keyboard event */
+	public void getKeyInput(KeyEvent event)
+	{
+		if (event.getKeyCode() == KeyEvent.VK_T)
+			showThreats = !showThreats;
+	}
+
 	/** Handles mouse movement in the game
 	 * @param event the mouse event */
 	public void getMouseMovement(MouseEvent event)
@@ -63,6 +63,11 @@ public class DesignSetupMenu extends Menu
 	public void reset()
 	{
 		super.reset();
+		// The boards of the last editor and map selection are not used again
+		if (editor != null)
+			editor.close();
+		if (mapSelect != null)
+			mapSelect.close();
 		initMenus();
 		currentMenu = newOrLoad;
 	}
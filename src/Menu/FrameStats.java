@@ -0,0 +1,122 @@
+package Menu;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics;
+
+/** Keeps track of how often the screen is drawn and the game is updated, and
+ * how long each frame takes, counted over windows of one second so the
+ * numbers shown stay readable
+ *
+ * @author Shiranka Miskin
+ * @version January 2013 */
+public class FrameStats
+{
+
+	private static final long WINDOW_NANOS = 1000000000L;
+	private static final Font font = new Font("Monospaced", Font.PLAIN, 12);
+
+	private long windowStart;
+	private long lastFrame;
+	private int frames;
+	private int updates;
+	private long frameNanos;
+	private long worstNanos;
+
+	// The numbers from the last complete window
+	private int framesPerSecond;
+	private int updatesPerSecond;
+	private double averageMillis;
+	private double worstMillis;
+
+	/** Creates the stats, starting the first window now */
+	public FrameStats()
+	{
+		windowStart = System.nanoTime();
+		lastFrame = windowStart;
+	}
+
+	/** Counts an update of the game */
+	public synchronized void countUpdate()
+	{
+		updates++;
+	}
+
+	/** Counts a frame drawn to the screen, timed from the previous frame */
+	public synchronized void countFrame()
+	{
+		long now = System.nanoTime();
+		long length = now - lastFrame;
+		lastFrame = now;
+		frames++;
+		frameNanos += length;
+		if (length > worstNanos)
+			worstNanos = length;
+
+		if (now - windowStart >= WINDOW_NANOS)
+		{
+			double seconds = (now - windowStart) / (double) WINDOW_NANOS;
+			framesPerSecond = (int) Math.round(frames / seconds);
+			updatesPerSecond = (int) Math.round(updates / seconds);
+			averageMillis = frameNanos / 1000000.0 / frames;
+			worstMillis = worstNanos / 1000000.0;
+			windowStart = now;
+			frames = 0;
+			updates = 0;
+			frameNanos = 0;
+			worstNanos = 0;
+		}
+	}
+
+	/** Gets the number of frames drawn in the last second
+	 *
+	 * @return the frames per second */
+	public synchronized int getFramesPerSecond()
+	{
+		return framesPerSecond;
+	}
+
+	/** Gets the number of updates of the game in the last second
+	 *
+	 * @return the updates per second */
+	public synchronized int getUpdatesPerSecond()
+	{
+		return updatesPerSecond;
+	}
+
+	/** Gets the average time between frames in the last second
+	 *
+	 * @return the time in milliseconds */
+	public synchronized double getAverageMillis()
+	{
+		return averageMillis;
+	}
+
+	/** Gets the longest time between two frames in the last second
+	 *
+	 * @return the time in milliseconds */
+	public synchronized double getWorstMillis()
+	{
+		return worstMillis;
+	}
+
+	/** Draws the stats in a box
+	 *
+	 * @param g the graphics to draw with
+	 * @param x the x coordinate of the top left corner of the box
+	 * @param y the y coordinate of the top left corner of the box */
+	public synchronized void draw(Graphics g, int x, int y)
+	{
+		g.setColor(new Color(0, 0, 0, 160));
+		g.fillRect(x, y, 150, 62);
+		g.setColor(Color.white);
+		g.setFont(font);
+		g.drawString("FPS: " + framesPerSecond, x + 6, y + 14);
+		g.drawString("Updates: " + updatesPerSecond, x + 6, y + 28);
+		g.drawString(String.format("Frame: %.1f ms", averageMillis), x + 6,
+				y + 42);
+		g.drawString(String.format("Worst: %.1f ms", worstMillis), x + 6,
+				y + 56);
+	}
+
+}
@@ -90,6 +90,14 @@ public class GameMenu extends Menu
 			completed = true;
 	}
 
+	/** Passes how far the screen is between updates to the game
+	 * @param progress the fraction of the time between updates that has
+	 *            passed */
+	public void setRenderProgress(double progress)
+	{
+		game.setRenderProgress(progress);
+	}
+
 	/** Sets a graphics parameter to antialiasing for both text and other
 	 * graphics (such as lines or rectangles)
 	 * @param g2 the graphics context */
@@ -256,5 +264,6 @@ public class GameMenu extends Menu
 	 * @param event the keyboard event */
 	public void getKeyInput(KeyEvent event)
 	{
+		game.getKeyInput(event);
 	}
 }
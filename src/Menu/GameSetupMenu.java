@@ -215,4 +215,12 @@ public class GameSetupMenu extends Menu
 		currentMenu.getKeyInput(event);
 	}
 
+	/** Passes how far the screen is between updates to the current menu
+	 * @param progress the fraction of the time between updates that has
+	 *            passed */
+	public void setRenderProgress(double progress)
+	{
+		currentMenu.setRenderProgress(progress);
+	}
+
 }
@@ -4,6 +4,7 @@ import java.applet.Applet;
 import java.applet.AudioClip;
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferStrategy;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
@@ -49,6 +50,15 @@ public class Main extends JFrame
 
 	public static Container container;
 
+	// The game is updated at a fixed rate in both ways of drawing the screen
+	private static final int UPDATE_MILLIS = 30;
+	// The most updates run to catch up before the screen is drawn again
+	private static final int MAX_UPDATES_PER_FRAME = 5;
+	public static final int DEFAULT_FPS = 60;
+	private FrameStats frameStats;
+	private boolean showStats;
+	private GameCanvas canvas;
+
 	private static BufferedImage blankCursorImg = new BufferedImage(16, 16,
 			BufferedImage.TYPE_INT_ARGB);
 	public static Cursor blankCursor = Toolkit
@@ -70,6 +80,24 @@ public class Main extends JFrame
 	 * @throws FontFormatException */
 	public Main(int screenWidth, int screenHeight) throws FontFormatException,
 			IOException
+	{
+		this(screenWidth, screenHeight, false, DEFAULT_FPS);
+	}
+
+	/** Initializes the screen, setting its size and adding either the panel
+	 * drawn by Swing or the canvas drawn by its own loop
+	 * 
+	 * @param screenWidth the width of the screen
+	 * @param screenHeight the height of the screen
+	 * @param active true to draw the screen from a loop of its own as often as
+	 *            the target frame rate allows, false to draw it through Swing
+	 *            after every update
+	 * @param targetFps the most frames to draw each second when drawing
+	 *            actively
+	 * @throws IOException
+	 * @throws FontFormatException */
+	public Main(int screenWidth, int screenHeight, boolean active,
+			int targetFps) throws FontFormatException, IOException
 	{
 		super("MainScreen");
 		size = new Dimension();
@@ -102,7 +130,13 @@ public class Main extends JFrame
 		currentMenu = mainMenu;
 		System.out.println("Loading");
 		container = this;
-		getContentPane().add(new DrawingPanel(), BorderLayout.CENTER);
+		frameStats = new FrameStats();
+		if (active)
+		{
+			canvas = new GameCanvas(targetFps);
+			getContentPane().add(canvas, BorderLayout.CENTER);
+		} else
+			getContentPane().add(new DrawingPanel(), BorderLayout.CENTER);
 		setVisible(true);
 
 		Sprite pauseIcon = new Sprite("res/UI/Pause.png");
@@ -118,10 +152,17 @@ public class Main extends JFrame
 		muteButton.setTransparent();
 
 		bgMusic.loop();
+
+		// The loop can only start once everything it draws exists
+		if (canvas != null)
+			canvas.start();
 	}
 
 
-	/** Loads the database data and initializes the main screen
+	/** Loads the database data and initializes the main screen. Passing
+	 * -active draws the screen from a loop of its own rather than through
+	 * Swing, and -fps followed by a number sets how many frames it aims to
+	 * draw each second
 	 * 
 	 * @param args the string arguments
 	 * @throws IOException
@@ -129,9 +170,29 @@ public class Main extends JFrame
 	public static void main(String[] args) throws IOException,
 			FontFormatException
 	{
+		boolean active = false;
+		int targetFps = DEFAULT_FPS;
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals("-active"))
+				active = true;
+			else if (args[i].equals("-fps") && i + 1 < args.length)
+			{
+				// A frame rate that is not a number is left at the default
+				try
+				{
+					targetFps = Math.max(1, Integer.parseInt(args[++i]));
+				} catch (NumberFormatException e)
+				{
+					System.err.println("Invalid frame rate " + args[i]
+							+ ", using " + DEFAULT_FPS);
+				}
+			}
+		}
+
 		Tile.loadTiles();
 		UnitMenu.loadUnitDisplay();
-		Main mainScreen = new Main(1281, 642);
+		Main mainScreen = new Main(1281, 642, active, targetFps);
 		mainScreen.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 	}
 
@@ -228,6 +289,78 @@ public class Main extends JFrame
 		instructionsMenu.reset();
 	}
 
+	/** Runs the menus for one update, switching to the next menu once the
+	 * current one is complete */
+	private void runMenus()
+	{
+		// If the options menu is being shown, check if it has
+		// been completed and ignore the rest of the program running
+		if (showOptions)
+		{
+			if (optionsMenu.isComplete())
+			{
+				if (optionsMenu.nextMenu != optionsMenu)
+				{
+					reset();
+					currentMenu = optionsMenu.nextMenu;
+				}
+				optionsMenu.reset();
+				showOptions = false;
+			}
+		}
+
+		// The exit game menu is not actually a menu but simply
+		// an indicator to exit the program completely
+		if (currentMenu == exitGame)
+			System.exit(DISPOSE_ON_CLOSE);
+
+		// Runs everything the current menu wants to run
+		if (!showOptions)
+			currentMenu.run();
+		// If the menu has completed, and it is time to move on to
+		// another,
+		// switch the current menu to whatever the next menu is
+		if (currentMenu.isComplete())
+		{
+			currentMenu = currentMenu.nextMenu;
+			if (currentMenu == mainMenu)
+				reset();
+		}
+		frameStats.countUpdate();
+	}
+
+	/** Draws the current menu and the buttons over it
+	 * 
+	 * @param g the graphics context to draw on
+	 * @param container the container being drawn on */
+	private void drawScreen(Graphics g, Container container)
+	{
+		// Draws whatever the current menu on the screen wants to draw
+		currentMenu.draw(g, container);
+
+		// Draw the rounded rectangles for the buttons
+		// since the buttons themselves are transparent
+		g.setColor(Color.white);
+		g.fillRoundRect(-15, -15, 45, 45, 15, 15);
+		g.fillRoundRect(size.width - 30, -15, 45, 45, 15, 15);
+		// Draw the outlines
+		g.setColor(new Color(235, 235, 235));
+		g.drawRoundRect(-15, -15, 45, 45, 15, 15);
+		g.drawRoundRect(size.width - 30, -15, 45, 45, 15, 15);
+		// Draw the appropriate pictures
+		pauseButton.draw(g, container);
+		muteButton.draw(g, container);
+
+		if (showOptions)
+		{
+			optionsMenu.draw(g, 0, 0, container);
+		}
+
+		frameStats.countFrame();
+		if (showStats)
+			frameStats.draw(g, 40, 5);
+	}
+
 	/** Checks if a certain point is within the screen
 	 * 
 	 * @param p the point to check
@@ -263,7 +396,7 @@ public class Main extends JFrame
 			setResizable(false);
 
 			// The game updates every time the timer finishes
-			timer = new Timer(30, this);
+			timer = new Timer(UPDATE_MILLIS, this);
 			timer.start();
 		}
 
@@ -273,27 +406,7 @@ public class Main extends JFrame
 		public void paintComponent(Graphics g)
 		{
 			super.paintComponent(g);
-			// Draws whatever the current menu on the screen wants to draw
-			currentMenu.draw(g, this);
-
-			// Draw the rounded rectangles for the buttons
-			// since the buttons themselves are transparent
-			g.setColor(Color.white);
-			g.fillRoundRect(-15, -15, 45, 45, 15, 15);
-			g.fillRoundRect(size.width - 30, -15, 45, 45, 15, 15);
-			// Draw the outlines
-			g.setColor(new Color(235, 235, 235));
-			g.drawRoundRect(-15, -15, 45, 45, 15, 15);
-			g.drawRoundRect(size.width - 30, -15, 45, 45, 15, 15);
-			// Draw the appropriate pictures
-			pauseButton.draw(g, this);
-			muteButton.draw(g, this);
-
-			if (showOptions)
-			{
-				optionsMenu.draw(g, 0, 0, this);
-			}
-
+			drawScreen(g, this);
 		}
 
 		/** Refreshes the game every time the timer activates
@@ -301,42 +414,217 @@ public class Main extends JFrame
 		 * @param e the event that has occured */
 		public void actionPerformed(ActionEvent e)
 		{
+			runMenus();
+			// Draw everything once all necessary data has been changed
+			repaint();
+		}
+	}
 
-			// If the options menu is being shown, check if it has
-			// been completed and ignore the rest of the program running
-			if (showOptions)
+	/** Draws the screen from a loop of its own rather than waiting for Swing to
+	 * paint it. The game is still updated at the same fixed rate as the timer
+	 * of the drawing panel, catching up when drawing falls behind, and the
+	 * screen is drawn as often as the target frame rate allows in between.
+	 * Input is held until the loop is ready for it so the menus are only ever
+	 * used from the one thread
+	 * 
+	 * @author Shiranka Miskin
+	 * @version January 2013 */
+	private class GameCanvas extends Canvas implements Runnable
+	{
+
+		private static final long serialVersionUID = 1L;
+
+		private MouseHandler mouse;
+		private KeyHandler keys;
+		private LinkedList<InputEvent> events;
+		private long frameNanos;
+		private Thread thread;
+
+		/** Adds the listeners that hold input for the loop
+		 * 
+		 * @param targetFps the most frames to draw each second */
+		public GameCanvas(int targetFps)
+		{
+			setFocusable(true);
+			// Swing painting would only draw over the loop's frames
+			setIgnoreRepaint(true);
+			setBackground(Color.black);
+			setResizable(false);
+			frameNanos = 1000000000L / targetFps;
+
+			mouse = new MouseHandler();
+			keys = new KeyHandler();
+			events = new LinkedList<InputEvent>();
+			InputQueue queue = new InputQueue();
+			addMouseListener(queue);
+			addMouseMotionListener(queue);
+			addKeyListener(queue);
+		}
+
+		/** Starts the loop on its own thread */
+		public void start()
+		{
+			createBufferStrategy(2);
+			requestFocus();
+			thread = new Thread(this, "Game loop");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		/** Updates the game and draws the screen until the program exits */
+		public void run()
+		{
+			BufferStrategy strategy = getBufferStrategy();
+			long updateNanos = UPDATE_MILLIS * 1000000L;
+			long previous = System.nanoTime();
+			long lag = 0;
+			while (true)
 			{
-				if (optionsMenu.isComplete())
+				long frameStart = System.nanoTime();
+				lag += frameStart - previous;
+				previous = frameStart;
+
+				handleInput();
+				int updates = 0;
+				while (lag >= updateNanos && updates < MAX_UPDATES_PER_FRAME)
+				{
+					runMenus();
+					lag -= updateNanos;
+					updates++;
+				}
+				// Skip the updates that could not be caught up on rather than
+				// falling further behind every frame
+				lag = Math.min(lag, updateNanos - 1);
+
+				// The moving unit is drawn partway to where the next update
+				// will move it, unless the game is paused and nothing moves
+				if (showOptions)
+					currentMenu.setRenderProgress(1);
+				else
+					currentMenu.setRenderProgress(lag / (double) updateNanos);
+				render(strategy);
+
+				long sleepNanos = frameNanos
+						- (System.nanoTime() - frameStart);
+				if (sleepNanos > 0)
 				{
-					if (optionsMenu.nextMenu != optionsMenu)
+					try
+					{
+						Thread.sleep(sleepNanos / 1000000,
+								(int) (sleepNanos % 1000000));
+					} catch (InterruptedException e)
 					{
-						reset();
-						currentMenu = optionsMenu.nextMenu;
+						return;
 					}
-					optionsMenu.reset();
-					showOptions = false;
 				}
 			}
+		}
 
-			// The exit game menu is not actually a menu but simply
-			// an indicator to exit the program completely
-			if (currentMenu == exitGame)
-				System.exit(DISPOSE_ON_CLOSE);
+		/** Draws the screen into the back buffer and shows it, drawing it
+		 * again if the buffer's contents were lost on the way
+		 * 
+		 * @param strategy the buffers of the canvas */
+		private void render(BufferStrategy strategy)
+		{
+			do
+			{
+				do
+				{
+					Graphics g = strategy.getDrawGraphics();
+					g.setColor(Color.black);
+					g.fillRect(0, 0, getWidth(), getHeight());
+					drawScreen(g, getContentPane());
+					g.dispose();
+				} while (strategy.contentsRestored());
+				strategy.show();
+			} while (strategy.contentsLost());
+			// Some systems hold drawing back until they are told to flush it
+			Toolkit.getDefaultToolkit().sync();
+		}
 
-			// Runs everything the current menu wants to run
-			if (!showOptions)
-				currentMenu.run();
-			// If the menu has completed, and it is time to move on to
-			// another,
-			// switch the current menu to whatever the next menu is
-			if (currentMenu.isComplete())
+		/** Passes the input that arrived since the last frame to the handlers */
+		private void handleInput()
+		{
+			while (true)
 			{
-				currentMenu = currentMenu.nextMenu;
-				if (currentMenu == mainMenu)
-					reset();
+				InputEvent event;
+				synchronized (events)
+				{
+					if (events.isEmpty())
+						return;
+					event = events.removeFirst();
+				}
+
+				switch (event.getID())
+				{
+				case MouseEvent.MOUSE_PRESSED:
+					mouse.mousePressed((MouseEvent) event);
+					break;
+				case MouseEvent.MOUSE_RELEASED:
+					mouse.mouseReleased((MouseEvent) event);
+					break;
+				case MouseEvent.MOUSE_MOVED:
+					mouse.mouseMoved((MouseEvent) event);
+					break;
+				case MouseEvent.MOUSE_DRAGGED:
+					mouse.mouseDragged((MouseEvent) event);
+					break;
+				case KeyEvent.KEY_PRESSED:
+					keys.keyPressed((KeyEvent) event);
+					break;
+				}
+			}
+		}
+
+		/** Holds input from Swing until the loop is ready for it
+		 * 
+		 * @author Shiranka Miskin
+		 * @version January 2013 */
+		private class InputQueue extends MouseAdapter implements KeyListener
+		{
+			public void mousePressed(MouseEvent event)
+			{
+				add(event);
+			}
+
+			public void mouseReleased(MouseEvent event)
+			{
+				add(event);
+			}
+
+			public void mouseMoved(MouseEvent event)
+			{
+				add(event);
+			}
+
+			public void mouseDragged(MouseEvent event)
+			{
+				add(event);
+			}
+
+			public void keyPressed(KeyEvent event)
+			{
+				add(event);
+			}
+
+			public void keyReleased(KeyEvent event)
+			{
+			}
+
+			public void keyTyped(KeyEvent event)
+			{
+			}
+
+			/** Adds an event to the end of the queue
+			 * 
+			 * @param event the input event */
+			private void add(InputEvent event)
+			{
+				synchronized (events)
+				{
+					events.add(event);
+				}
 			}
-			// Draw everything once all necessary data has been changed
-			repaint();
 		}
 	}
 
@@ -429,6 +717,9 @@ public class Main extends JFrame
 		{
 			if (event.getKeyCode() == KeyEvent.VK_ESCAPE)
 				showOptions = !showOptions;
+			// Shows or hides how quickly the screen is being drawn
+			if (event.getKeyCode() == KeyEvent.VK_F3)
+				showStats = !showStats;
 			if (!showOptions)
 				currentMenu.getKeyInput(event);
 		}
@@ -1,6 +1,7 @@
 package Menu;
 
 import Board.Board;
+import Board.BoardWriter;
 import Board.Sprite;
 import Board.Tile;
 
@@ -34,6 +35,8 @@ public class MapEditor extends Menu
 	private Sprite spawnIndicator;
 	private CircleButton spawnButton;
 	private CircleButton saveButton;
+	private BoardWriter boardWriter;
+	private Font statusFont;
 
 	/** Creates a new map editor menu
 	 * 
@@ -82,6 +85,8 @@ public class MapEditor extends Menu
 		saveButton = new CircleButton(new Point(660, 551), 15, saveImg,
 				saveHoverImg);
 		saveButton.setHoverColor(new Color(147, 254, 255));
+		boardWriter = new BoardWriter();
+		statusFont = Main.getFont("Kalinga", 16);
 
 		Sprite spawnIcon = new Sprite("res/UI/SpawnButton.png");
 		Sprite spawnHoverIcon = new Sprite("res/UI/SpawnButton_Hover.png");
@@ -92,6 +97,13 @@ public class MapEditor extends Menu
 
 	}
 
+	/** Lets go of the files of the board being edited once the editor is
+	 * closed. Saves that are still being written keep their own copy */
+	public void close()
+	{
+		board.close();
+	}
+
 	/** Initializes the cost editor for a point on the board by determining the
 	 * point where it is created
 	 * 
@@ -146,6 +158,29 @@ public class MapEditor extends Menu
 			costEditor.draw(g, container);
 		saveButton.draw(g, container);
 		spawnButton.draw(g, container);
+
+		// Shows how the last save went beside the save button
+		String saveStatus = null;
+		switch (boardWriter.getStatus())
+		{
+		case SAVING:
+			saveStatus = "Saving...";
+			break;
+		case SAVED:
+			saveStatus = "Saved";
+			break;
+		case FAILED:
+			saveStatus = "Save failed";
+			break;
+		default:
+			break;
+		}
+		if (saveStatus != null)
+		{
+			g.setFont(statusFont);
+			g.setColor(Color.WHITE);
+			g.drawString(saveStatus, 685, 557);
+		}
 	}
 
 	/** Handles mouse clicks
@@ -162,16 +197,11 @@ public class MapEditor extends Menu
 			if (spawnButton.getMousePress(event))
 				selectionMade = true;
 
-			// If the save button is clicked, write the board to a file
+			// If the save button is clicked, write the board to a file in the
+			// background so that editing can carry on while it saves
 			if (saveButton.getMousePress(event))
 			{
-				try
-				{
-					board.writeToFile();
-				} catch (IOException e)
-				{
-					e.printStackTrace();
-				}
+				boardWriter.save(board, board.getSaveFile());
 				saveButton.reset();
 				selectionMade = true;
 				return;
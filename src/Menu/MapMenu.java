@@ -8,18 +8,21 @@ import java.awt.Graphics;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
 import UIElements.ScrollBar;
 import UIElements.TextButton;
 
 import Board.Board;
+import Board.BoardCatalog;
 import Board.Sprite;
+import Board.ThumbnailCache;
 
-/** Lets the user select a map out of all the maps stored in the boards folder
+/** Lets the user select a map out of all the maps stored in the boards folder.
+ * The maps are listed from a catalog of their details, and only the selected
+ * map is loaded
  * 
  * @author Shiranka Miskin
  * @version January 2013 */
@@ -27,8 +30,10 @@ public class MapMenu extends Menu
 {
 
 	private final String boardLoc = "res/boards/";
-	private ArrayList<Board> boards;
+	private BoardCatalog catalog;
+	private ArrayList<BoardCatalog.Entry> entries;
 	private ArrayList<TextButton> buttons;
+	private BoardCatalog.Entry selectedEntry;
 	private Board selectedBoard;
 	private TextButton selectedButton;
 	private final Dimension boardButtonSize = new Dimension(220, 40);
@@ -36,6 +41,7 @@ public class MapMenu extends Menu
 	private Rectangle boardButtonArea;
 	private ScrollBar scrollBar;
 	private Rectangle boardDisplay;
+	private ThumbnailCache thumbnails;
 	private TextButton goButton;
 
 	/** Creates a new menu
@@ -46,17 +52,23 @@ public class MapMenu extends Menu
 	{
 		super(background, size);
 
-		loadAllBoards();
+		catalog = new BoardCatalog(new File(boardLoc));
+		entries = catalog.getEntries();
 		loadAllButtons();
 
+		// Boards are previewed from thumbnails drawn to fit the display area
+		int border = 15;
+		boardDisplay = new Rectangle(new Point(288 + border, 47 + border),
+				new Dimension(946 - border * 2, 490 - border * 2));
+		thumbnails = new ThumbnailCache(boardDisplay.getSize());
+
 		// Create the button to load the map
 		goButton = new TextButton("Go!", Main.getFont("Sword Art Online", 32),
 				new Point(1127, 542), new Dimension(107, 52));
 
-		// The selection defaults to the first board
-		loadBoard(boards.get(0));
-		selectedButton = buttons.get(0);
-		selectedButton.setClicked(true);
+		// The selection defaults to the first board that can be loaded
+		for (int i = 0; i < entries.size() && selectedBoard == null; i++)
+			selectEntry(i);
 
 		// The scroll bar lets the menu show any number of boards
 		// depending on how many they have created
@@ -88,9 +100,32 @@ public class MapMenu extends Menu
 	public void reset()
 	{
 		super.reset();
-		loadAllBoards();
+		catalog.refresh();
+		entries = catalog.getEntries();
 		loadAllButtons();
-		loadBoard(selectedBoard);
+
+		// The selected board is only loaded again if its file has changed.
+		// There may be no selection if no board could be loaded before
+		int index = -1;
+		for (int i = 0; i < entries.size() && index == -1
+				&& selectedEntry != null; i++)
+			if (entries.get(i).getFile().equals(selectedEntry.getFile()))
+				index = i;
+		if (index != -1 && entries.get(index).getHash() == selectedEntry.getHash())
+		{
+			selectedEntry = entries.get(index);
+			selectedButton = buttons.get(index);
+			selectedButton.setClicked(true);
+			loadBoard(selectedBoard);
+		} else if (index == -1 || !selectEntry(index))
+		{
+			close();
+			selectedBoard = null;
+			selectedEntry = null;
+			selectedButton = null;
+			for (int i = 0; i < entries.size() && selectedBoard == null; i++)
+				selectEntry(i);
+		}
 		scrollBar.reset();
 	}
 
@@ -99,35 +134,43 @@ public class MapMenu extends Menu
 	 * @param board the board to display */
 	private void loadBoard(Board board)
 	{
-		int border = 15;
 		board.reset();
-		boardDisplay = new Rectangle(new Point(288 + border, 47 + border),
-				new Dimension(946 - border * 2, 490 - border * 2));
 		board.autofit(boardDisplay);
 		selectedBoard = board;
 	}
 
-	/** Loads all the boards found in the board directory into the arraylist and
-	 * sorts them by name */
-	private void loadAllBoards()
+	/** Selects one of the boards in the catalog, loading it from its file
+	 * 
+	 * @param index the index of the board's entry
+	 * @return true if the board was loaded, false if it could not be */
+	private boolean selectEntry(int index)
 	{
-		// Load all the boards in the board directory
-		File boardFolder = new File(boardLoc);
-		File[] boardTxts = boardFolder.listFiles();
-		boards = new ArrayList<Board>();
-		for (File boardTxt : boardTxts)
+		Board board;
+		try
 		{
-			try
-			{
-				boards.add(new Board(boardTxt.toString()));
-			} catch (FileNotFoundException e)
-			{
-				e.printStackTrace();
-			}
+			board = entries.get(index).load();
+		} catch (IOException e)
+		{
+			e.printStackTrace();
+			return false;
 		}
-		// Sorts the list of boards alphabetically by name
-		Collections.sort(boards);
-
+		if (selectedButton != null)
+			selectedButton.setClicked(false);
+		if (selectedBoard != null)
+			selectedBoard.close();
+		selectedEntry = entries.get(index);
+		selectedButton = buttons.get(index);
+		selectedButton.setClicked(true);
+		loadBoard(board);
+
+		// The boards beside it in the list are likely to be looked at next,
+		// but are asked for first so that its own thumbnail is drawn first
+		if (index > 0)
+			thumbnails.prefetch(entries.get(index - 1));
+		if (index < entries.size() - 1)
+			thumbnails.prefetch(entries.get(index + 1));
+		thumbnails.prefetch(selectedEntry);
+		return true;
 	}
 
 	/** Loads all the buttons for the boards */
@@ -141,14 +184,22 @@ public class MapMenu extends Menu
 		Point listTopLeft = new Point(50, 50);
 		boardButtonArea = new Rectangle(new Point(listTopLeft), new Dimension(
 				boardButtonSize.width, size.height - listTopLeft.y * 2));
-		for (Board board : boards)
+		for (BoardCatalog.Entry entry : entries)
 		{
-			buttons.add(new TextButton(board.getName(), boardButtonFont,
+			buttons.add(new TextButton(entry.getName(), boardButtonFont,
 					new Point(listTopLeft), boardButtonSize));
 			listTopLeft.translate(0, boardButtonSize.height + 2);
 		}
 	}
 
+	/** Lets go of the files of the board being previewed, once neither the
+	 * menu nor anything it was passed to will use it again */
+	public void close()
+	{
+		if (selectedBoard != null)
+			selectedBoard.close();
+	}
+
 	/** Returns what board the user has currently selected
 	 * 
 	 * @return the selected board */
@@ -168,12 +219,27 @@ public class MapMenu extends Menu
 
 		if (scrollBar != null)
 			scrollBar.draw(g, container);
-		selectedBoard.draw(g, container);
+
+		// Draws the thumbnail of the board once it is ready instead of drawing
+		// every tile of the board each frame. Nothing is shown if no board
+		// could be loaded
 		g.setFont(boardButtonFont);
-		g.setColor(Color.white);
-		g.drawString("Max Players: " + selectedBoard.getMaxPlayers(), 322, 575);
-		g.drawString("Size: " + selectedBoard.getGridWidth() + " x "
-				+ selectedBoard.getGridHeight(), 605, 575);
+		if (selectedEntry != null)
+		{
+			BufferedImage thumbnail = thumbnails.get(selectedEntry);
+			if (thumbnail != null)
+				g.drawImage(thumbnail, (int) (boardDisplay.getCenterX()
+						- thumbnail.getWidth() / 2),
+						(int) (boardDisplay.getCenterY()
+								- thumbnail.getHeight() / 2), null);
+			else
+				selectedBoard.draw(g, container);
+			g.setColor(Color.white);
+			g.drawString("Max Players: " + selectedEntry.getMaxPlayers(), 322,
+					575);
+			g.drawString("Size: " + selectedEntry.getWidth() + " x "
+					+ selectedEntry.getHeight(), 605, 575);
+		}
 
 		g.setClip(boardButtonArea.x, boardButtonArea.y, boardButtonArea.width,
 				boardButtonArea.height);
@@ -227,7 +293,8 @@ public class MapMenu extends Menu
 	 * @param event the mouse event */
 	public void getMousePress(MouseEvent event)
 	{
-		if (goButton.contains(event.getPoint()))
+		// There is nothing to play or edit until a board has been loaded
+		if (goButton.contains(event.getPoint()) && selectedBoard != null)
 			completed = true;
 
 		// Check the buttons if the mouse is in the area (otherwise
@@ -235,13 +302,9 @@ public class MapMenu extends Menu
 		if (boardButtonArea.contains(event.getPoint()))
 			for (TextButton button : buttons)
 			{
-				if (button.getMousePress(event))
-				{
-					selectedButton.setClicked(false);
-					selectedButton = button;
-					selectedButton.setClicked(true);
-					loadBoard(boards.get(buttons.indexOf(button)));
-				}
+				if (button.getMousePress(event)
+						&& !selectEntry(buttons.indexOf(button)))
+					button.setClicked(false);
 			}
 
 		scrollBar.getMousePress(event);
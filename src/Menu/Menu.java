@@ -143,6 +143,16 @@ public class Menu
 			clickable.draw(g, container);
 	}
 
+	/** Sets how far the screen is between the last update and the next one,
+	 * for menus that draw movement partway through an update. A generic menu
+	 * has nothing moving, so it ignores it
+	 * @param progress the fraction of the time between updates that has
+	 *            passed */
+	public void setRenderProgress(double progress)
+	{
+
+	}
+
 	/** Handles mouse input for the menu
 	 * @param event the mouse event */
 	public void getMousePress(MouseEvent event)